@@ -0,0 +1,51 @@
+package in.tamchow.sudoku.benchmarks;
+
+import in.tamchow.sudoku.BitboardSolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solving the whole corpus at once, either board by board with the bitmask solver or propagated side by side by the
+ * experimental {@link BatchedSolver}. A score is the time for the whole corpus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+    @Param({"4", "9", "16", "25"})
+    private int size;
+    @Param({"64"})
+    private int lanes;
+
+    private int[][] puzzles;
+    private BitboardSolver solver;
+    private BatchedSolver batched;
+
+    @Setup
+    public void setUp() {
+        puzzles = Corpus.load(size);
+        solver = new BitboardSolver(Corpus.geometry(size));
+        batched = new BatchedSolver(Corpus.geometry(size), lanes);
+    }
+
+    @Benchmark
+    public int perBoard() {
+        int solved = 0;
+        for (int[] puzzle : puzzles) {
+            if (solver.load(puzzle) && solver.solve()) {
+                ++solved;
+            }
+        }
+        return solved;
+    }
+
+    @Benchmark
+    public int[][] batched() {
+        return batched.solve(puzzles);
+    }
+}
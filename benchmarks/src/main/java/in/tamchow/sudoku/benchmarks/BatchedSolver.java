@@ -0,0 +1,265 @@
+package in.tamchow.sudoku.benchmarks;
+
+import in.tamchow.sudoku.BitboardSolver;
+import in.tamchow.sudoku.Geometry;
+
+import java.util.Arrays;
+
+/**
+ * An experiment in solving many boards of one shape together, for bulk work where computing candidates dominates.
+ * <p>
+ * The boards are laid out side by side as lanes: each cell and each row, column and sub-grid mask is an array over
+ * the lanes, with a cell holding the bit of its value rather than the value. Propagation then runs over every lane in
+ * straight loops of plain int operations without branches, indexed by the lane alone, which leaves the JIT free to
+ * vectorise them. Each round, a sweep over the cells places naked singles and keeps the candidates it computed, and a
+ * sweep over the units then places hidden singles found from those candidates. A lane whose board runs into a
+ * contradiction is switched off by clearing its entry in a lane mask. Boards that singles do not finish are then
+ * searched one at a time by a {@link BitboardSolver}, starting from what propagation placed.
+ * <p>
+ * The sweeps do vectorise, running about four times faster than with the JIT's vectoriser off, but the searches
+ * after propagation dominate, so overall this is no faster than solving board by board with a {@link BitboardSolver}
+ * and slower on small batches. It therefore lives with {@link BatchBenchmark}, which compares the two, rather than
+ * in the engine.
+ * <p>
+ * Instances keep their buffers between calls and are not thread-safe; use one per thread.
+ */
+public final class BatchedSolver {
+
+    public static final int DEFAULT_LANES = 64;
+
+    private final Geometry geometry;
+    private final int lanes, size, cells, full;
+    private final int[][] bits, candidates, unitMasks, rowMasks, columnMasks, boxMasks;
+    private final int[] once, twice, alive, board;
+    private final BitboardSolver fallback;
+    private long[] nodes = new long[0];
+
+    public BatchedSolver(Geometry geometry) {
+        this(geometry, DEFAULT_LANES);
+    }
+
+    /**
+     * @param lanes number of boards propagated together
+     */
+    public BatchedSolver(Geometry geometry, int lanes) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("Need at least one lane, got " + lanes);
+        }
+        this.geometry = geometry;
+        this.lanes = lanes;
+        size = geometry.getSize();
+        cells = geometry.getCells();
+        full = geometry.fullMask();
+        bits = new int[cells][lanes];
+        candidates = new int[cells][lanes];
+        unitMasks = new int[geometry.unitCount()][lanes];
+        rowMasks = new int[cells][];
+        columnMasks = new int[cells][];
+        boxMasks = new int[cells][];
+        for (int cell = 0; cell < cells; ++cell) {
+            rowMasks[cell] = unitMasks[geometry.rowOf(cell)];
+            columnMasks[cell] = unitMasks[size + geometry.columnOf(cell)];
+            boxMasks[cell] = unitMasks[2 * size + geometry.boxOf(cell)];
+        }
+        once = new int[lanes];
+        twice = new int[lanes];
+        alive = new int[lanes];
+        board = new int[cells];
+        fallback = new BitboardSolver(geometry);
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    /**
+     * @param boards row-major boards of this shape, 0 for an empty cell
+     * @return the solution of each board, or null where a board has none or its givens clash
+     * @throws IllegalArgumentException if a board has the wrong number of cells
+     */
+    public int[][] solve(int[][] boards) {
+        int[][] solutions = new int[boards.length][];
+        nodes = new long[boards.length];
+        for (int from = 0; from < boards.length; from += lanes) {
+            int count = Math.min(lanes, boards.length - from);
+            load(boards, from, count);
+            boolean progress = true;
+            while (progress) {
+                progress = nakedSingles() | hiddenSingles();
+            }
+            for (int lane = 0; lane < count; ++lane) {
+                solutions[from + lane] = finish(lane, from + lane);
+            }
+        }
+        return solutions;
+    }
+
+    /**
+     * @return the search nodes the board at this index of the last {@link #solve(int[][])} took after propagation,
+     * 0 if singles alone solved it
+     */
+    public long getNodes(int index) {
+        return nodes[index];
+    }
+
+    private void load(int[][] boards, int from, int count) {
+        for (int[] lane : bits) {
+            Arrays.fill(lane, 0);
+        }
+        for (int[] lane : unitMasks) {
+            Arrays.fill(lane, 0);
+        }
+        for (int lane = 0; lane < lanes; ++lane) {
+            alive[lane] = lane < count ? -1 : 0;
+            if (lane >= count) {
+                continue;
+            }
+            int[] given = boards[from + lane];
+            if (given.length != cells) {
+                throw new IllegalArgumentException("Expected " + cells + " cells, got " + given.length);
+            }
+            for (int cell = 0; cell < cells; ++cell) {
+                int value = given[cell];
+                if (value == 0) {
+                    continue;
+                }
+                int bit = value > 0 && value <= size ? 1 << (value - 1) : 0;
+                int[] row = rowMasks[cell], column = columnMasks[cell], box = boxMasks[cell];
+                if (bit == 0 || ((row[lane] | column[lane] | box[lane]) & bit) != 0) {
+                    alive[lane] = 0;
+                    break;
+                }
+                bits[cell][lane] = bit;
+                row[lane] |= bit;
+                column[lane] |= bit;
+                box[lane] |= bit;
+            }
+        }
+    }
+
+    /**
+     * Places every value that is the only candidate of its cell, and switches off lanes with a cell left without
+     * any. Cells are visited in order, so a placement already narrows the cells after it in the same sweep.
+     *
+     * @return whether a value was placed in any lane
+     */
+    private boolean nakedSingles() {
+        int[] alive = this.alive;
+        int full = this.full, placed = 0;
+        for (int cell = 0; cell < cells; ++cell) {
+            int[] state = bits[cell], open = candidates[cell], row = rowMasks[cell], column = columnMasks[cell],
+                    box = boxMasks[cell];
+            for (int lane = 0; lane < lanes; ++lane) {
+                int value = state[lane], empty = (value - 1) >> 31,
+                        mask = ~(row[lane] | column[lane] | box[lane]) & full & empty & alive[lane],
+                        single = mask & (((mask & (mask - 1)) - 1) >> 31);
+                alive[lane] &= ~(empty & ((mask - 1) >> 31));
+                state[lane] = value | single;
+                open[lane] = mask ^ single;
+                row[lane] |= single;
+                column[lane] |= single;
+                box[lane] |= single;
+                placed |= single;
+            }
+        }
+        return placed != 0;
+    }
+
+    /**
+     * Places every value that fits only one cell of a unit, and switches off lanes with a value that fits nowhere in
+     * a unit or two values that fit only the same cell. Works from the candidates of the last naked singles sweep,
+     * which may have shrunk since but never grown, so a value found here that no longer fits its cell means the board
+     * has no solution.
+     *
+     * @return whether a value was placed in any lane
+     */
+    private boolean hiddenSingles() {
+        int placed = 0;
+        for (int unit = 0; unit < unitMasks.length; ++unit) {
+            int[] unitCells = geometry.unit(unit);
+            Arrays.fill(once, 0);
+            Arrays.fill(twice, 0);
+            for (int cell : unitCells) {
+                count(candidates[cell]);
+            }
+            unique(unitMasks[unit]);
+            for (int cell : unitCells) {
+                placed |= placeHidden(cell);
+            }
+        }
+        return placed != 0;
+    }
+
+    /**
+     * Adds the candidates of a cell to the values seen once and the values seen twice in the unit.
+     */
+    private void count(int[] open) {
+        int[] once = this.once, twice = this.twice;
+        for (int lane = 0; lane < lanes; ++lane) {
+            int mask = open[lane];
+            twice[lane] |= once[lane] & mask;
+            once[lane] |= mask;
+        }
+    }
+
+    /**
+     * Switches off lanes with a value missing from the unit, and narrows the values seen to those seen exactly once
+     * and not yet placed.
+     */
+    private void unique(int[] unitMask) {
+        int[] once = this.once, twice = this.twice, alive = this.alive;
+        int full = this.full;
+        for (int lane = 0; lane < lanes; ++lane) {
+            int missing = full & ~(once[lane] | unitMask[lane]);
+            alive[lane] &= ~((-missing) >> 31);
+            once[lane] &= ~twice[lane] & ~unitMask[lane] & alive[lane];
+        }
+    }
+
+    /**
+     * @return the values placed in the cell in any lane
+     */
+    private int placeHidden(int cell) {
+        int[] state = bits[cell], open = candidates[cell], row = rowMasks[cell], column = columnMasks[cell],
+                box = boxMasks[cell], once = this.once, alive = this.alive;
+        int placed = 0;
+        for (int lane = 0; lane < lanes; ++lane) {
+            int hidden = open[lane] & once[lane],
+                    fits = ~(row[lane] | column[lane] | box[lane]) & ((state[lane] - 1) >> 31),
+                    clash = (-((hidden & ~fits) | (hidden & (hidden - 1)))) >> 31,
+                    single = hidden & ~clash & alive[lane];
+            alive[lane] &= ~clash;
+            state[lane] |= single;
+            row[lane] |= single;
+            column[lane] |= single;
+            box[lane] |= single;
+            placed |= single;
+        }
+        return placed;
+    }
+
+    /**
+     * @return the solution of a lane, searching for it if propagation left cells open
+     */
+    private int[] finish(int lane, int index) {
+        if (alive[lane] == 0) {
+            return null;
+        }
+        boolean complete = true;
+        for (int cell = 0; cell < cells; ++cell) {
+            int bit = bits[cell][lane];
+            board[cell] = bit == 0 ? 0 : Integer.numberOfTrailingZeros(bit) + 1;
+            complete &= bit != 0;
+        }
+        if (complete) {
+            return board.clone();
+        }
+        boolean solved = fallback.load(board) && fallback.solve();
+        nodes[index] = fallback.getNodes();
+        return solved ? fallback.getSolution() : null;
+    }
+}
@@ -0,0 +1,49 @@
+package in.tamchow.sudoku.benchmarks;
+
+import in.tamchow.sudoku.Geometry;
+import in.tamchow.sudoku.PuzzleFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The bundled benchmark puzzles: one file per board size under {@code /corpus}, one puzzle per line in
+ * {@link PuzzleFormat}, with {@code #} starting a comment line.
+ */
+final class Corpus {
+
+    private Corpus() {
+    }
+
+    static Geometry geometry(int size) {
+        return PuzzleFormat.geometryFor(size * size);
+    }
+
+    static int[][] load(int size) {
+        String resource = "/corpus/" + size + "x" + size + ".txt";
+        InputStream stream = Corpus.class.getResourceAsStream(resource);
+        if (stream == null) {
+            throw new IllegalArgumentException("No corpus for " + size + "x" + size + " boards");
+        }
+        Geometry geometry = geometry(size);
+        List<int[]> puzzles = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    puzzles.add(PuzzleFormat.parse(line, geometry));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(resource, e);
+        }
+        return puzzles.toArray(new int[0][]);
+    }
+}
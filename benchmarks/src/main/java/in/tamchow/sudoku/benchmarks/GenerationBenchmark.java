@@ -0,0 +1,42 @@
+package in.tamchow.sudoku.benchmarks;
+
+import in.tamchow.sudoku.Geometry;
+import in.tamchow.sudoku.Grade;
+import in.tamchow.sudoku.Puzzle;
+import in.tamchow.sudoku.PuzzleGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating a new game at the fill limits and target grade the game itself uses, as a pool miss would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GenerationBenchmark {
+
+    @Param({"4", "9", "16", "25"})
+    private int size;
+    @Param({"0.5", "1.0"})
+    private double difficulty;
+
+    private PuzzleGenerator generator;
+
+    @Setup
+    public void setUp() {
+        Geometry geometry = Corpus.geometry(size);
+        generator = new PuzzleGenerator(geometry, difficulty, 2 * geometry.getSize(), geometry.getCells() / 2,
+                new Random(size));
+        generator.setTargetGrade(Grade.forDifficulty(difficulty));
+    }
+
+    @Benchmark
+    public Puzzle generate() {
+        return generator.generate();
+    }
+}
@@ -0,0 +1,39 @@
+package in.tamchow.sudoku.benchmarks;
+
+import in.tamchow.sudoku.Grade;
+import in.tamchow.sudoku.LogicalSolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grading the corpus with the logical solver, as batch grading and graded generation do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GradeBenchmark {
+
+    @Param({"4", "9", "16", "25"})
+    private int size;
+
+    private int[][] puzzles;
+    private LogicalSolver solver;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        puzzles = Corpus.load(size);
+        solver = new LogicalSolver(Corpus.geometry(size));
+    }
+
+    @Benchmark
+    public Grade grade() {
+        int[] puzzle = puzzles[next];
+        next = (next + 1) % puzzles.length;
+        return solver.grade(puzzle);
+    }
+}
@@ -0,0 +1,68 @@
+package in.tamchow.sudoku.benchmarks;
+
+import in.tamchow.sudoku.Geometry;
+import in.tamchow.sudoku.SudokuGrid;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Painting the grid offscreen, headless: the whole board as on a new game, and one cell as after a keystroke.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RenderBenchmark {
+
+    @Param({"4", "9", "16", "25"})
+    private int size;
+
+    private SudokuGrid grid;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private Rectangle[] cellBounds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Geometry geometry = Corpus.geometry(size);
+        int[] puzzle = Corpus.load(size)[0];
+        grid = new SudokuGrid(geometry, new Color[]{Color.CYAN, Color.YELLOW, Color.RED, Color.WHITE});
+        cellBounds = new Rectangle[geometry.getCells()];
+        for (int cell = 0; cell < cellBounds.length; ++cell) {
+            grid.setCell(cell, puzzle[cell] == 0 ? "" : String.valueOf(puzzle[cell]), puzzle[cell] != 0);
+            cellBounds[cell] = grid.cellBounds(cell);
+        }
+        Dimension dimension = grid.getPreferredSize();
+        image = new BufferedImage(dimension.width, dimension.height, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage renderBoard() {
+        graphics.setClip(null);
+        grid.render(graphics);
+        return image;
+    }
+
+    /**
+     * Repaints the rectangle of one cell, as the grid does for an edit.
+     */
+    @Benchmark
+    public BufferedImage renderCell() {
+        graphics.setClip(cellBounds[next]);
+        next = (next + 1) % cellBounds.length;
+        grid.render(graphics);
+        return image;
+    }
+}
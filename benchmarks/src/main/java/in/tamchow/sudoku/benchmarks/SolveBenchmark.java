@@ -0,0 +1,57 @@
+package in.tamchow.sudoku.benchmarks;
+
+import in.tamchow.sudoku.Solver;
+import in.tamchow.sudoku.SolverMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solving the corpus with each search engine. Every invocation takes the next puzzle of the corpus, so a score is
+ * the mean over the corpus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SolveBenchmark {
+
+    @Param({"4", "9", "16", "25"})
+    private int size;
+    @Param({"BITBOARD", "DANCING_LINKS"})
+    private SolverMode mode;
+
+    private int[][] puzzles;
+    private Solver solver;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        puzzles = Corpus.load(size);
+        solver = mode.create(Corpus.geometry(size));
+    }
+
+    @Benchmark
+    public int[] solve() {
+        solver.load(nextPuzzle());
+        solver.solve();
+        return solver.getSolution();
+    }
+
+    /**
+     * The uniqueness check the generator runs after every removal.
+     */
+    @Benchmark
+    public int countSolutions() {
+        solver.load(nextPuzzle());
+        return solver.countSolutions(2);
+    }
+
+    private int[] nextPuzzle() {
+        int[] puzzle = puzzles[next];
+        next = (next + 1) % puzzles.length;
+        return puzzle;
+    }
+}
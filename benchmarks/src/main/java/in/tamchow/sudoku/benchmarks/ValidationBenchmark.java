@@ -0,0 +1,84 @@
+package in.tamchow.sudoku.benchmarks;
+
+import in.tamchow.sudoku.ConflictTracker;
+import in.tamchow.sudoku.Geometry;
+import in.tamchow.sudoku.Solver;
+import in.tamchow.sudoku.SolverMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Board validation as the game does it: filling a whole board and checking it, and the per-keystroke update.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValidationBenchmark {
+
+    @Param({"4", "9", "16", "25"})
+    private int size;
+
+    private int[][] puzzles, solutions;
+    private int[] freeCells;
+    private ConflictTracker tracker;
+    private int next, edit;
+
+    @Setup
+    public void setUp() {
+        Geometry geometry = Corpus.geometry(size);
+        puzzles = Corpus.load(size);
+        solutions = new int[puzzles.length][];
+        Solver solver = SolverMode.AUTO.create(geometry);
+        for (int i = 0; i < puzzles.length; ++i) {
+            solver.load(puzzles[i]);
+            if (!solver.solve()) {
+                throw new IllegalStateException("Corpus puzzle " + i + " has no solution");
+            }
+            solutions[i] = solver.getSolution();
+        }
+        int free = 0;
+        freeCells = new int[geometry.getCells()];
+        for (int cell = 0; cell < puzzles[0].length; ++cell) {
+            if (puzzles[0][cell] == 0) {
+                freeCells[free++] = cell;
+            }
+        }
+        freeCells = Arrays.copyOf(freeCells, free);
+        tracker = new ConflictTracker(geometry);
+    }
+
+    /**
+     * Loads a puzzle, fills in its solution and checks it.
+     */
+    @Benchmark
+    public boolean checkSolution() {
+        int index = next;
+        next = (next + 1) % puzzles.length;
+        tracker.load(puzzles[index]);
+        tracker.load(solutions[index]);
+        return tracker.isSolved();
+    }
+
+    /**
+     * Types a wrong value into a free cell and clears it again.
+     */
+    @Benchmark
+    public int editCell() {
+        int cell = freeCells[edit];
+        edit = (edit + 1) % freeCells.length;
+        tracker.set(cell, solutions[0][cell] % size + 1, null);
+        int conflicts = tracker.getConflicts();
+        tracker.set(cell, 0, null);
+        return conflicts;
+    }
+
+    @Setup(Level.Iteration)
+    public void resetTracker() {
+        tracker.load(puzzles[0]);
+    }
+}
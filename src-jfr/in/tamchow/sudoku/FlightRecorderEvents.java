@@ -0,0 +1,118 @@
+package in.tamchow.sudoku;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event types of the engine. Only referenced by {@link EngineMetrics} after checking that the JVM has Flight
+ * Recorder, so the rest of the engine still runs where it does not.
+ */
+final class FlightRecorderEvents {
+
+    private FlightRecorderEvents() {
+    }
+
+    /**
+     * Loading the first event class costs a few hundred milliseconds, so nothing is emitted, or loaded, until a
+     * recording has been started.
+     */
+    static boolean isRecording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    static void solve(String mode, int size, long nodes, boolean solved, long elapsedNanos) {
+        SolveEvent event = new SolveEvent();
+        if (event.isEnabled()) {
+            event.mode = mode;
+            event.size = size;
+            event.nodes = nodes;
+            event.solved = solved;
+            event.searchTime = elapsedNanos;
+            event.commit();
+        }
+    }
+
+    static void generate(int size, int clues, int attempts, long elapsedNanos) {
+        GenerateEvent event = new GenerateEvent();
+        if (event.isEnabled()) {
+            event.size = size;
+            event.clues = clues;
+            event.attempts = attempts;
+            event.generationTime = elapsedNanos;
+            event.commit();
+        }
+    }
+
+    static void restart(String cause, int size) {
+        RestartEvent event = new RestartEvent();
+        if (event.isEnabled()) {
+            event.cause = cause;
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    static void poolTake(int size, boolean hit) {
+        PoolTakeEvent event = new PoolTakeEvent();
+        if (event.isEnabled()) {
+            event.size = size;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+    @Name("in.tamchow.sudoku.Solve")
+    @Label("Solve")
+    @Category("Sudoku")
+    @Description("A board solved by one of the search engines")
+    static final class SolveEvent extends Event {
+        @Label("Mode")
+        String mode;
+        @Label("Board Size")
+        int size;
+        @Label("Search Nodes")
+        long nodes;
+        @Label("Solved")
+        boolean solved;
+        @Label("Search Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long searchTime;
+    }
+
+    @Name("in.tamchow.sudoku.Generate")
+    @Label("Generate")
+    @Category("Sudoku")
+    @Description("A puzzle produced by the generator")
+    static final class GenerateEvent extends Event {
+        @Label("Board Size")
+        int size;
+        @Label("Clues")
+        int clues;
+        @Label("Attempts")
+        int attempts;
+        @Label("Generation Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long generationTime;
+    }
+
+    @Name("in.tamchow.sudoku.GeneratorRestart")
+    @Label("Generator Restart")
+    @Category("Sudoku")
+    @Description("A generator attempt thrown away")
+    static final class RestartEvent extends Event {
+        @Label("Cause")
+        String cause;
+        @Label("Board Size")
+        int size;
+    }
+
+    @Name("in.tamchow.sudoku.PoolTake")
+    @Label("Pool Take")
+    @Category("Sudoku")
+    @Description("A puzzle taken from the pre-generated pool, or generated on a miss")
+    static final class PoolTakeEvent extends Event {
+        @Label("Board Size")
+        int size;
+        @Label("Hit")
+        boolean hit;
+    }
+}
@@ -0,0 +1,31 @@
+package in.tamchow.sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cells a chess knight's move apart hold different values.
+ */
+public final class AntiKnightConstraint implements Constraint {
+
+    private static final int[][] MOVES = {{1, 2}, {2, 1}, {2, -1}, {1, -2}};
+
+    /**
+     * @return every pair of cells a knight's move apart, each once
+     */
+    @Override
+    public int[][] regions(Geometry geometry) {
+        int size = geometry.getSize();
+        List<int[]> pairs = new ArrayList<>();
+        for (int cell = 0; cell < geometry.getCells(); ++cell) {
+            int rowIndex = geometry.rowOf(cell), columnIndex = geometry.columnOf(cell);
+            for (int[] move : MOVES) {
+                int row = rowIndex + move[0], column = columnIndex + move[1];
+                if (row < size && column >= 0 && column < size) {
+                    pairs.add(new int[]{cell, geometry.cellAt(row, column)});
+                }
+            }
+        }
+        return pairs.toArray(new int[0][]);
+    }
+}
@@ -0,0 +1,54 @@
+package in.tamchow.sudoku;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs solves on background threads, so callers such as the event dispatch thread never block on a search.
+ * Each solve can be watched, cancelled and given a timeout through the {@link SolveTask} it returns.
+ */
+public final class AsyncSolver {
+
+    public static final int DEFAULT_THREADS = 2;
+
+    private static final class SharedHolder {
+        private static final AsyncSolver INSTANCE = new AsyncSolver(DEFAULT_THREADS);
+    }
+
+    private final ExecutorService executor;
+
+    public AsyncSolver(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "solver-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the solver shared by all games in this JVM
+     */
+    public static AsyncSolver shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Starts solving a board in the background.
+     *
+     * @param board   row-major values, 0 for an empty cell; copied before the call returns
+     * @param timeout time from now after which the search gives up, 0 or less for none
+     * @return the running solve; once the timeout has passed it completes with an aborted result
+     */
+    public SolveTask submit(Geometry geometry, int[] board, SolverMode mode, long timeout, TimeUnit unit) {
+        SolveTask task = new SolveTask(geometry, board.clone(), mode, new SearchControl(timeout, unit));
+        executor.execute(task);
+        return task;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
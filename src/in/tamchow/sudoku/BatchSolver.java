@@ -0,0 +1,241 @@
+package in.tamchow.sudoku;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless batch mode: streams puzzles in {@link PuzzleFormat} one per line from a file or standard input, solves
+ * them on a fixed worker pool and writes one result line per puzzle.
+ * <p>
+ * A result line is the solution, or the input line followed by {@code NO_SOLUTION} or {@code INVALID}. In ordered
+ * mode results follow the input order; at most {@code queue} results are held back waiting for a slow puzzle.
+ * In unordered mode workers write results as they finish. Either way the work queue is bounded, so memory use does
+ * not depend on the input size. A summary with throughput, latency percentiles and failure counts goes to
+ * standard error at the end.
+ * <p>
+ * With {@code --grade}, puzzles are rated by {@link LogicalSolver} instead of solved: a result line is the input
+ * line followed by its {@link Grade} and the hardest technique it needed, and the summary counts each grade.
+ */
+public final class BatchSolver {
+
+    private static final String USAGE = "Usage: Sudoku --batch <file|-> [--output <file>] [--threads <n>] " +
+            "[--queue <n>] [--unordered] [--mode auto|bitboard|dancing_links|portfolio] [--grade]";
+
+    private final int threads, queueCapacity;
+    private final boolean ordered;
+    private final SolverMode mode;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder solved = new LongAdder(), unsolvable = new LongAdder(), invalid = new LongAdder();
+    private final LongAdder[] grades = new LongAdder[Grade.values().length];
+    private final ThreadLocal<Map<Integer, Solver>> solvers = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Map<Integer, LogicalSolver>> graders = ThreadLocal.withInitial(HashMap::new);
+    private boolean grading;
+    /**
+     * Failure of an unordered worker, solving or writing, which fails the run as ordered mode would.
+     */
+    private volatile IOException failure;
+
+    public BatchSolver(int threads, int queueCapacity, boolean ordered, SolverMode mode) {
+        this.threads = Math.max(1, threads);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.ordered = ordered;
+        this.mode = mode;
+        for (int i = 0; i < grades.length; ++i) {
+            grades[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param grading whether to grade puzzles instead of solving them
+     */
+    public void setGrading(boolean grading) {
+        this.grading = grading;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String input = null, output = null;
+        int threads = Runtime.getRuntime().availableProcessors(), queue = 1024;
+        boolean ordered = true, grading = false;
+        SolverMode mode = SolverMode.AUTO;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--batch":
+                        input = args[++i];
+                        break;
+                    case "--output":
+                        output = args[++i];
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--queue":
+                        queue = Integer.parseInt(args[++i]);
+                        break;
+                    case "--unordered":
+                        ordered = false;
+                        break;
+                    case "--mode":
+                        mode = SolverMode.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                        break;
+                    case "--grade":
+                        grading = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e.getMessage() == null ? USAGE : e.getMessage() + System.lineSeparator() + USAGE);
+            System.exit(2);
+        }
+        if (input == null) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        BatchSolver batchSolver = new BatchSolver(threads, queue, ordered, mode);
+        batchSolver.setGrading(grading);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                "-".equals(input) ? System.in : new FileInputStream(input), StandardCharsets.US_ASCII), 1 << 16);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(
+                     output == null ? System.out : new FileOutputStream(output), StandardCharsets.US_ASCII), 1 << 16)) {
+            long start = System.nanoTime();
+            batchSolver.run(reader, writer);
+            writer.flush();
+            System.err.println(batchSolver.summary(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Solves every line of {@code reader}, writing results to {@code writer}. Blank lines are skipped.
+     */
+    public void run(BufferedReader reader, Writer writer) throws IOException, InterruptedException {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.CallerRunsPolicy());
+        Queue<Future<String>> pending = new ArrayDeque<>();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String puzzle = line.trim();
+                if (failure != null) {
+                    throw failure;
+                }
+                if (puzzle.isEmpty()) {
+                    continue;
+                }
+                if (ordered) {
+                    pending.add(workers.submit(() -> solveLine(puzzle)));
+                    while (pending.size() > queueCapacity) {
+                        writeResult(writer, pending.remove());
+                    }
+                } else {
+                    workers.execute(() -> {
+                        String result;
+                        try {
+                            result = solveLine(puzzle);
+                        } catch (RuntimeException e) {
+                            failure = new IOException(e);
+                            return;
+                        }
+                        synchronized (writer) {
+                            try {
+                                writer.write(result);
+                                writer.write('\n');
+                            } catch (IOException e) {
+                                failure = e;
+                            }
+                        }
+                    });
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeResult(writer, pending.remove());
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void writeResult(Writer writer, Future<String> result) throws IOException, InterruptedException {
+        try {
+            writer.write(result.get());
+            writer.write('\n');
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private String solveLine(String line) {
+        long start = System.nanoTime();
+        try {
+            Geometry geometry = PuzzleFormat.geometryFor(line.length());
+            int[] values = PuzzleFormat.parse(line, geometry);
+            if (grading) {
+                return gradeLine(line, geometry, values);
+            }
+            Solver solver = solvers.get().computeIfAbsent(geometry.getSize(), size -> mode.create(geometry));
+            boolean isSolved = solver.load(values) && solver.solve();
+            EngineMetrics.get().recordSolve(mode.resolve(geometry), geometry.getSize(), solver.getNodes(), isSolved,
+                    System.nanoTime() - start);
+            if (isSolved) {
+                solved.increment();
+                return PuzzleFormat.format(solver.getSolution());
+            }
+            unsolvable.increment();
+            return line + " NO_SOLUTION";
+        } catch (IllegalArgumentException e) {
+            invalid.increment();
+            return line + " INVALID";
+        } finally {
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    private String gradeLine(String line, Geometry geometry, int[] values) {
+        LogicalSolver grader = graders.get().computeIfAbsent(geometry.getSize(), size -> new LogicalSolver(geometry));
+        if (!grader.load(values)) {
+            invalid.increment();
+            return line + " INVALID";
+        }
+        Technique hardest = grader.solve();
+        Grade grade = Grade.of(hardest, grader.isSolved());
+        grades[grade.ordinal()].increment();
+        if (grader.isSolved()) {
+            solved.increment();
+        }
+        return line + ' ' + grade + ' ' + (hardest == null ? "-" : hardest.name());
+    }
+
+    public String summary(long elapsedNanos) {
+        long total = latencies.getCount();
+        StringBuilder gradeCounts = new StringBuilder();
+        if (grading) {
+            for (Grade grade : Grade.values()) {
+                gradeCounts.append(gradeCounts.length() == 0 ? "" : ", ")
+                        .append(grades[grade.ordinal()].sum()).append(' ').append(grade);
+            }
+            gradeCounts.append(System.lineSeparator());
+        } else if (mode == SolverMode.PORTFOLIO) {
+            EngineMetrics metrics = EngineMetrics.get();
+            for (PortfolioSolver.Strategy strategy : PortfolioSolver.Strategy.values()) {
+                gradeCounts.append(gradeCounts.length() == 0 ? "wins " : ", ").append(strategy).append(' ')
+                        .append(String.format("%.1f%%", 100 * metrics.getPortfolioWinRate(strategy)));
+            }
+            gradeCounts.append(System.lineSeparator());
+        }
+        return String.format("%d puzzles in %.3f s (%.0f puzzles/s), %d solved, %d unsolvable, %d invalid%n%slatency %s",
+                total, elapsedNanos / 1e9, total / Math.max(elapsedNanos / 1e9, 1e-9),
+                solved.sum(), unsolvable.sum(), invalid.sum(), gradeCounts, latencies);
+    }
+}
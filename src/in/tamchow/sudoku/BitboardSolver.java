@@ -0,0 +1,427 @@
+package in.tamchow.sudoku;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Constraint-propagation solver over a flat, primitive board.
+ * <p>
+ * Keeps one bitmask of placed values per row, column and sub-grid, so the candidates of a cell are a single
+ * {@code ~(row | column | box)}. Naked and hidden singles are propagated to a fixed point before every branch,
+ * and branching always happens on the cell with the fewest candidates.
+ * Placements are recorded on a trail and undone on backtrack, so the search allocates nothing per node.
+ * <p>
+ * With variant {@link Rules}, the candidates of a cell are further narrowed by its compiled variant masks; without
+ * them the only extra cost is a null check.
+ */
+public final class BitboardSolver implements Solver {
+
+    private final Geometry geometry;
+    private final int full;
+    private final int[] values, rowMasks, columnMasks, boxMasks, trail, solution;
+    private int[] valueOrders;
+    private int trailSize, solutionCount, depth;
+    private boolean consistent, aborted, descendingValues, reverseScan;
+    private long nodes, backtracks, candidateChecks, nodeBudget = Long.MAX_VALUE;
+    private Random random;
+    private AtomicInteger sharedSolutions;
+    private SearchControl control;
+    private Rules rules;
+
+    public BitboardSolver(Geometry geometry) {
+        this.geometry = geometry;
+        full = geometry.fullMask();
+        int cells = geometry.getCells(), size = geometry.getSize();
+        values = new int[cells];
+        solution = new int[cells];
+        trail = new int[cells];
+        rowMasks = new int[size];
+        columnMasks = new int[size];
+        boxMasks = new int[size];
+    }
+
+    /**
+     * @param random source of randomness for value ordering, or null to try values in ascending order
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+        if (random != null && valueOrders == null) {
+            valueOrders = new int[geometry.getCells() * geometry.getSize()];
+        }
+    }
+
+    /**
+     * @param descendingValues whether to try values from the largest down when not randomized
+     */
+    public void setDescendingValues(boolean descendingValues) {
+        this.descendingValues = descendingValues;
+    }
+
+    /**
+     * @param reverseScan whether to look for the branching cell from the last cell backwards, which breaks ties
+     *                    between equally constrained cells the other way and so explores a different tree
+     */
+    public void setReverseScan(boolean reverseScan) {
+        this.reverseScan = reverseScan;
+    }
+
+    /**
+     * @param nodeBudget number of nodes after which a search gives up, see {@link #isAborted()}
+     */
+    public void setNodeBudget(long nodeBudget) {
+        this.nodeBudget = nodeBudget > 0 ? nodeBudget : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return whether the last search ran out of its node budget or was stopped through its control, in which case
+     * its count is a lower bound
+     */
+    @Override
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    @Override
+    public void setControl(SearchControl control) {
+        this.control = control;
+    }
+
+    /**
+     * @param rules variant rules for this geometry applied from the next {@link #load(int[])}, or null for classic
+     *              rules
+     */
+    public void setRules(Rules rules) {
+        this.rules = rules;
+    }
+
+    @Override
+    public boolean load(int[] board) {
+        if (board.length != values.length) {
+            throw new IllegalArgumentException("Expected " + values.length + " cells, got " + board.length);
+        }
+        Arrays.fill(values, 0);
+        Arrays.fill(rowMasks, 0);
+        Arrays.fill(columnMasks, 0);
+        Arrays.fill(boxMasks, 0);
+        nodes = backtracks = candidateChecks = 0;
+        trailSize = solutionCount = depth = 0;
+        consistent = true;
+        for (int cell = 0; cell < board.length; ++cell) {
+            int value = board[cell];
+            if (value == 0) {
+                continue;
+            }
+            if (value < 0 || value > geometry.getSize() || (candidates(cell) & (1 << (value - 1))) == 0) {
+                consistent = false;
+            } else {
+                place(cell, value);
+            }
+        }
+        trailSize = 0;
+        return consistent;
+    }
+
+    @Override
+    public boolean solve() {
+        return countSolutions(1) > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The board is left as loaded unless the limit was reached.
+     */
+    @Override
+    public int countSolutions(int limit) {
+        return countSolutions(limit, null);
+    }
+
+    /**
+     * Counts solutions towards a limit shared with other solvers searching disjoint parts of the same tree.
+     * Every solution found is added to {@code shared} as soon as it is found, and the search stops once the
+     * shared count reaches the limit.
+     *
+     * @return the number of solutions this solver found
+     */
+    int countSolutions(int limit, AtomicInteger shared) {
+        solutionCount = 0;
+        aborted = false;
+        sharedSolutions = shared;
+        long startNodes = nodes, startBacktracks = backtracks, startChecks = candidateChecks;
+        if (consistent && limit > 0) {
+            search(limit);
+        }
+        sharedSolutions = null;
+        if (control != null) {
+            control.poll(nodes, depth);
+        }
+        EngineMetrics.get().recordSearch(nodes - startNodes, backtracks - startBacktracks,
+                candidateChecks - startChecks);
+        return solutionCount;
+    }
+
+    /**
+     * Places the singles implied by the loaded board, as the search would before branching.
+     *
+     * @return false if the board is inconsistent or propagation ran into a contradiction
+     */
+    boolean propagateLoaded() {
+        return consistent && propagate();
+    }
+
+    /**
+     * @return the empty cell the search would branch on next, or -1 if the board is full
+     */
+    int branchCell() {
+        return selectCell();
+    }
+
+    int candidateMask(int cell) {
+        return candidates(cell);
+    }
+
+    /**
+     * @return a copy of the current, possibly partial, board
+     */
+    int[] currentValues() {
+        return values.clone();
+    }
+
+    /**
+     * @return a copy of the board as it was when the trail had {@code mark} placements
+     */
+    int[] valuesAt(int mark) {
+        int[] board = values.clone();
+        for (int i = mark; i < trailSize; ++i) {
+            board[trail[i]] = 0;
+        }
+        return board;
+    }
+
+    void copyValues(int[] target) {
+        System.arraycopy(values, 0, target, 0, values.length);
+    }
+
+    /**
+     * @return the current trail length, to be passed to {@link #undoTo(int)}
+     */
+    int trailMark() {
+        return trailSize;
+    }
+
+    void undoTo(int mark) {
+        undo(mark);
+    }
+
+    /**
+     * Places a value on the trail without checking it, as the search does when branching.
+     */
+    void assign(int cell, int value) {
+        place(cell, value);
+    }
+
+    @Override
+    public int[] getSolution() {
+        return solutionCount > 0 ? solution.clone() : null;
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * @return the number of cell candidate computations since the last {@link #load(int[])}
+     */
+    public long getCandidateChecks() {
+        return candidateChecks;
+    }
+
+    private boolean search(int limit) {
+        if (++nodes > nodeBudget || ((nodes & (SearchControl.POLL_INTERVAL - 1)) == 0 && shouldStop(limit))) {
+            aborted = true;
+            return true;
+        }
+        int mark = trailSize;
+        if (!propagate()) {
+            undo(mark);
+            ++backtracks;
+            return false;
+        }
+        int cell = selectCell();
+        if (cell < 0) {
+            if (solutionCount++ == 0) {
+                System.arraycopy(values, 0, solution, 0, values.length);
+            }
+            if ((sharedSolutions == null ? solutionCount : sharedSolutions.incrementAndGet()) >= limit) {
+                return true;
+            }
+            undo(mark);
+            return false;
+        }
+        int candidates = candidates(cell);
+        if (random == null && !descendingValues) {
+            for (int remaining = candidates; remaining != 0; remaining &= remaining - 1) {
+                if (branch(cell, Integer.numberOfTrailingZeros(remaining) + 1, limit)) {
+                    return true;
+                }
+            }
+        } else if (random == null) {
+            for (int remaining = candidates; remaining != 0; ) {
+                int highest = Integer.highestOneBit(remaining);
+                remaining &= ~highest;
+                if (branch(cell, Integer.numberOfTrailingZeros(highest) + 1, limit)) {
+                    return true;
+                }
+            }
+        } else {
+            // Each depth shuffles into its own slice, so deeper branches leave this order intact
+            int offset = depth * geometry.getSize(), count = 0;
+            for (int remaining = candidates; remaining != 0; remaining &= remaining - 1) {
+                valueOrders[offset + count++] = Integer.numberOfTrailingZeros(remaining) + 1;
+            }
+            for (int i = count - 1; i > 0; --i) {
+                int j = random.nextInt(i + 1), swap = valueOrders[offset + i];
+                valueOrders[offset + i] = valueOrders[offset + j];
+                valueOrders[offset + j] = swap;
+            }
+            for (int i = 0; i < count; ++i) {
+                if (branch(cell, valueOrders[offset + i], limit)) {
+                    return true;
+                }
+            }
+        }
+        undo(mark);
+        ++backtracks;
+        return false;
+    }
+
+    private boolean shouldStop(int limit) {
+        return (sharedSolutions != null && sharedSolutions.get() >= limit) ||
+                (control != null && control.poll(nodes, depth));
+    }
+
+    private boolean branch(int cell, int value, int limit) {
+        int mark = trailSize;
+        place(cell, value);
+        ++depth;
+        boolean stop = search(limit);
+        --depth;
+        if (stop) {
+            return true;
+        }
+        undo(mark);
+        return false;
+    }
+
+    /**
+     * Places naked and hidden singles until none remain.
+     *
+     * @return false if some cell or unit has run out of candidates
+     */
+    private boolean propagate() {
+        int cells = values.length;
+        boolean changed;
+        do {
+            changed = false;
+            for (int cell = 0; cell < cells; ++cell) {
+                if (values[cell] == 0) {
+                    int candidates = candidates(cell);
+                    if (candidates == 0) {
+                        return false;
+                    }
+                    if ((candidates & (candidates - 1)) == 0) {
+                        place(cell, Integer.numberOfTrailingZeros(candidates) + 1);
+                        changed = true;
+                    }
+                }
+            }
+            if (changed) {
+                continue;
+            }
+            for (int unitIndex = 0; unitIndex < geometry.unitCount(); ++unitIndex) {
+                int[] unit = geometry.unit(unitIndex);
+                int placed = 0, once = 0, twice = 0;
+                for (int cell : unit) {
+                    if (values[cell] != 0) {
+                        placed |= 1 << (values[cell] - 1);
+                    } else {
+                        int candidates = candidates(cell);
+                        twice |= once & candidates;
+                        once |= candidates;
+                    }
+                }
+                if ((once | placed) != full) {
+                    return false;
+                }
+                for (int hidden = once & ~twice; hidden != 0; hidden &= hidden - 1) {
+                    int bit = hidden & -hidden, target = -1;
+                    for (int cell : unit) {
+                        if (values[cell] == 0 && (candidates(cell) & bit) != 0) {
+                            target = cell;
+                            break;
+                        }
+                    }
+                    if (target < 0) {
+                        return false;
+                    }
+                    place(target, Integer.numberOfTrailingZeros(bit) + 1);
+                    changed = true;
+                }
+            }
+        } while (changed);
+        return true;
+    }
+
+    /**
+     * @return the empty cell with the fewest candidates, or -1 if the board is full
+     */
+    private int selectCell() {
+        int best = -1, bestCount = Integer.MAX_VALUE;
+        int first = reverseScan ? values.length - 1 : 0, step = reverseScan ? -1 : 1;
+        for (int cell = first; cell >= 0 && cell < values.length; cell += step) {
+            if (values[cell] == 0) {
+                int count = Integer.bitCount(candidates(cell));
+                if (count < bestCount) {
+                    best = cell;
+                    bestCount = count;
+                    if (count <= 2) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private int candidates(int cell) {
+        ++candidateChecks;
+        int candidates = ~(rowMasks[geometry.rowOf(cell)] | columnMasks[geometry.columnOf(cell)] |
+                boxMasks[geometry.boxOf(cell)]) & full;
+        return rules == null ? candidates : candidates & rules.candidates(values, cell);
+    }
+
+    private void place(int cell, int value) {
+        int bit = 1 << (value - 1);
+        values[cell] = value;
+        rowMasks[geometry.rowOf(cell)] |= bit;
+        columnMasks[geometry.columnOf(cell)] |= bit;
+        boxMasks[geometry.boxOf(cell)] |= bit;
+        trail[trailSize++] = cell;
+    }
+
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            int cell = trail[--trailSize], clear = ~(1 << (values[cell] - 1));
+            values[cell] = 0;
+            rowMasks[geometry.rowOf(cell)] &= clear;
+            columnMasks[geometry.columnOf(cell)] &= clear;
+            boxMasks[geometry.boxOf(cell)] &= clear;
+        }
+    }
+}
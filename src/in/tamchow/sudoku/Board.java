@@ -0,0 +1,103 @@
+package in.tamchow.sudoku;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Mutable state of a game in progress: the current value of every cell and which cells are fixed givens.
+ */
+public final class Board {
+
+    private final Geometry geometry;
+    private final int[] values;
+    private final BitSet fixed;
+
+    public Board(Geometry geometry) {
+        this(geometry, new int[geometry.getCells()], new BitSet(geometry.getCells()));
+    }
+
+    private Board(Geometry geometry, int[] values, BitSet fixed) {
+        this.geometry = geometry;
+        this.values = values;
+        this.fixed = fixed;
+    }
+
+    /**
+     * @return a board holding the givens of the puzzle as fixed cells
+     */
+    public static Board of(Puzzle puzzle) {
+        Board board = new Board(puzzle.getGeometry());
+        for (int cell = 0; cell < board.values.length; ++cell) {
+            int value = puzzle.getGiven(cell);
+            if (value != 0) {
+                board.values[cell] = value;
+                board.fixed.set(cell);
+            }
+        }
+        return board;
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    public int getValue(int cell) {
+        return values[cell];
+    }
+
+    /**
+     * @param value the new value, 0 to clear the cell
+     * @throws IllegalArgumentException if the value is out of range or the cell is fixed
+     */
+    public void setValue(int cell, int value) {
+        if (value < 0 || value > geometry.getSize()) {
+            throw new IllegalArgumentException("Value " + value + " out of range");
+        }
+        if (fixed.get(cell)) {
+            throw new IllegalArgumentException("Cell " + cell + " is fixed");
+        }
+        values[cell] = value;
+    }
+
+    public boolean isFixed(int cell) {
+        return fixed.get(cell);
+    }
+
+    /**
+     * Sets a value and whether it is fixed, bypassing the fixed-cell check; used to rebuild saved boards.
+     */
+    public void setCell(int cell, int value, boolean isFixed) {
+        if (value < 0 || value > geometry.getSize()) {
+            throw new IllegalArgumentException("Value " + value + " out of range");
+        }
+        values[cell] = value;
+        fixed.set(cell, isFixed);
+    }
+
+    /**
+     * @return a copy of the row-major values, 0 for an empty cell
+     */
+    public int[] getValues() {
+        return values.clone();
+    }
+
+    public Board copy() {
+        return new Board(geometry, values.clone(), (BitSet) fixed.clone());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Board)) {
+            return false;
+        }
+        Board that = (Board) other;
+        return geometry.getSize() == that.geometry.getSize() &&
+                geometry.getBoxRows() == that.geometry.getBoxRows() &&
+                Arrays.equals(values, that.values) && fixed.equals(that.fixed);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(values) + fixed.hashCode();
+    }
+}
@@ -0,0 +1,94 @@
+package in.tamchow.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * A board rewritten by {@link Canonicalizer} together with the symmetry that produced it. Two forms are equal when
+ * their sub-grid shapes and canonical values are, and boards with equal forms are the same puzzle up to that
+ * symmetry, so a solution of one maps onto a solution of the other through {@link #toCanonical(int[])} and
+ * {@link #toOriginal(int[])}.
+ */
+public final class CanonicalForm {
+
+    private final int boxRows, boxColumns;
+    private final int[] values, cellOf, digitOf, labelOf;
+    private final int hash;
+
+    /**
+     * @param geometry shape of the board, of which only the sub-grid shape tells forms apart
+     * @param values   canonical row-major values
+     * @param cellOf   original cell of each canonical cell
+     * @param digitOf  original digit of each canonical digit, index 0 unused
+     */
+    CanonicalForm(Geometry geometry, int[] values, int[] cellOf, int[] digitOf) {
+        boxRows = geometry.getBoxRows();
+        boxColumns = geometry.getBoxColumns();
+        this.values = values;
+        this.cellOf = cellOf;
+        this.digitOf = digitOf;
+        labelOf = new int[digitOf.length];
+        for (int label = 1; label < digitOf.length; ++label) {
+            labelOf[digitOf[label]] = label;
+        }
+        hash = 31 * (31 * boxRows + boxColumns) + Arrays.hashCode(values);
+    }
+
+    /**
+     * @return a copy of the canonical values
+     */
+    public int[] getValues() {
+        return values.clone();
+    }
+
+    /**
+     * @return the hash of the sub-grid shape and canonical values, equal for all boards in the same canonical class
+     */
+    public int getHash() {
+        return hash;
+    }
+
+    /**
+     * Maps a board of the original's shape into canonical space, e.g. its solution before caching it.
+     */
+    public int[] toCanonical(int[] original) {
+        int[] canonical = new int[cellOf.length];
+        for (int cell = 0; cell < canonical.length; ++cell) {
+            canonical[cell] = labelOf[original[cellOf[cell]]];
+        }
+        return canonical;
+    }
+
+    /**
+     * Maps a board in canonical space back onto the original, e.g. a cached solution.
+     */
+    public int[] toOriginal(int[] canonical) {
+        int[] original = new int[cellOf.length];
+        for (int cell = 0; cell < canonical.length; ++cell) {
+            original[cellOf[cell]] = digitOf[canonical[cell]];
+        }
+        return original;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CanonicalForm)) {
+            return false;
+        }
+        CanonicalForm form = (CanonicalForm) other;
+        return hash == form.hash && boxRows == form.boxRows && boxColumns == form.boxColumns &&
+                Arrays.equals(values, form.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return PuzzleFormat.format(values);
+    }
+}
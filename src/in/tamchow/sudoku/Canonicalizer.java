@@ -0,0 +1,296 @@
+package in.tamchow.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maps boards onto a canonical representative under the symmetries that preserve Sudoku: transposition, swaps of
+ * bands and stacks, swaps of rows within a band and columns within a stack, and relabelling of digits. Boards with
+ * sub-grids that are not square are never transposed, as that would change their shape.
+ * <p>
+ * Rows, bands, columns and stacks are first put in order of keys that these symmetries cannot change. The keys start
+ * from how often each given's digit occurs and how full its sub-grid is, and are refined a few times by the keys of
+ * the crossing lines. Lines whose keys tie are then tried in every order, digits are numbered in order of first
+ * appearance, and the lexicographically smallest board over all those orders and both orientations is kept. That
+ * board depends only on the puzzle's class, so equivalent boards share a form. Ties are only broken this way while
+ * at most {@link #MAX_ORDERINGS} orderings need to be tried; beyond that, as for boards with few givens, tied lines
+ * keep their relative order and equivalent boards can end up with different forms. A shared form is always a real
+ * symmetry, though: the canonicalizer may miss an equivalence but never reports a false one.
+ * <p>
+ * Boards must hold values from 0 to the board side only. Instances hold no state besides the geometry and can be
+ * shared between threads.
+ */
+public final class Canonicalizer {
+
+    /**
+     * Most combinations of row and column orders tried per orientation.
+     */
+    public static final int MAX_ORDERINGS = 256;
+    private static final int REFINEMENTS = 2;
+
+    private final Geometry geometry;
+
+    public Canonicalizer(Geometry geometry) {
+        this.geometry = geometry;
+    }
+
+    /**
+     * @param board row-major values, 0 for an empty cell
+     */
+    public CanonicalForm canonicalize(int[] board) {
+        int size = geometry.getSize(), cells = geometry.getCells();
+        int[] best = null, bestRows = null, bestColumns = null, values = new int[cells], labelOf = new int[size + 1];
+        boolean bestTransposed = false;
+        int orientations = geometry.getBoxRows() == geometry.getBoxColumns() ? 2 : 1;
+        for (int orientation = 0; orientation < orientations; ++orientation) {
+            boolean transposed = orientation == 1;
+            long[] rowKeys = new long[size], columnKeys = new long[size];
+            lineKeys(board, transposed, rowKeys, columnKeys);
+            List<int[]> rowOrders = lineOrders(rowKeys, geometry.getBoxRows()),
+                    columnOrders = lineOrders(columnKeys, geometry.getBoxColumns());
+            if ((long) rowOrders.size() * columnOrders.size() > MAX_ORDERINGS) {
+                rowOrders = rowOrders.subList(0, 1);
+                columnOrders = columnOrders.subList(0, 1);
+            }
+            for (int[] rowOrder : rowOrders) {
+                for (int[] columnOrder : columnOrders) {
+                    if (relabel(board, rowOrder, columnOrder, transposed, best, values, labelOf)) {
+                        best = values.clone();
+                        bestRows = rowOrder;
+                        bestColumns = columnOrder;
+                        bestTransposed = transposed;
+                    }
+                }
+            }
+        }
+        return form(board, bestRows, bestColumns, bestTransposed);
+    }
+
+    /**
+     * Computes keys of the rows and columns that no symmetry changes: each given contributes the number of times its
+     * digit occurs and the number of givens in its sub-grid, and each round then adds the keys of the lines crossing
+     * a line at its givens.
+     */
+    private void lineKeys(int[] board, boolean transposed, long[] rowKeys, long[] columnKeys) {
+        int size = geometry.getSize();
+        int[] digitCounts = new int[size + 1], boxCounts = new int[size];
+        for (int cell = 0; cell < board.length; ++cell) {
+            if (board[cell] != 0) {
+                ++digitCounts[board[cell]];
+                ++boxCounts[geometry.boxOf(cell)];
+            }
+        }
+        for (int rowIndex = 0; rowIndex < size; ++rowIndex) {
+            for (int columnIndex = 0; columnIndex < size; ++columnIndex) {
+                int cell = cellOf(rowIndex, columnIndex, transposed);
+                if (board[cell] != 0) {
+                    long key = mix(digitCounts[board[cell]] * (size + 1L) + boxCounts[geometry.boxOf(cell)]);
+                    rowKeys[rowIndex] += key;
+                    columnKeys[columnIndex] += key;
+                }
+            }
+        }
+        for (int round = 0; round < REFINEMENTS; ++round) {
+            long[] rows = new long[size], columns = new long[size];
+            for (int rowIndex = 0; rowIndex < size; ++rowIndex) {
+                for (int columnIndex = 0; columnIndex < size; ++columnIndex) {
+                    int cell = cellOf(rowIndex, columnIndex, transposed);
+                    if (board[cell] != 0) {
+                        long digit = mix(digitCounts[board[cell]]);
+                        rows[rowIndex] += mix(columnKeys[columnIndex] + digit);
+                        columns[columnIndex] += mix(rowKeys[rowIndex] + digit);
+                    }
+                }
+            }
+            for (int line = 0; line < size; ++line) {
+                rowKeys[line] = mix(rowKeys[line]) + rows[line];
+                columnKeys[line] = mix(columnKeys[line]) + columns[line];
+            }
+        }
+    }
+
+    /**
+     * @return a well spread function of a value, so that sums of it tell multisets apart
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Orders the bands by the sum of their line keys, then the lines within each band by their own keys, with every
+     * arrangement of bands and lines whose keys tie.
+     *
+     * @param bandWidth number of lines in a band, i.e. the height of a sub-grid for rows and its width for columns
+     * @return the original line of each canonical line, for each arrangement; only the first, which keeps tied lines
+     * in their relative order, if there are more than {@link #MAX_ORDERINGS}
+     */
+    private List<int[]> lineOrders(long[] keys, int bandWidth) {
+        int size = geometry.getSize(), bandCount = size / bandWidth;
+        long[] bandKeys = new long[bandCount];
+        for (int line = 0; line < size; ++line) {
+            bandKeys[line / bandWidth] += keys[line];
+        }
+        int[] bands = sortedIndices(bandKeys, 0, bandCount);
+        int[][] lines = new int[bandCount][];
+        long count = arrangements(bandKeys, bands);
+        for (int band = 0; band < bandCount; ++band) {
+            lines[band] = sortedIndices(keys, band * bandWidth, bandWidth);
+            count = Math.min(count * arrangements(keys, lines[band]), MAX_ORDERINGS + 1L);
+        }
+        boolean all = count <= MAX_ORDERINGS;
+        List<List<int[]>> linesOfBand = new ArrayList<>(bandCount);
+        for (int band = 0; band < bandCount; ++band) {
+            linesOfBand.add(all ? permutations(keys, lines[band]) : Collections.singletonList(lines[band]));
+        }
+        List<int[]> orders = new ArrayList<>();
+        for (int[] bandOrder : all ? permutations(bandKeys, bands) : Collections.singletonList(bands)) {
+            combine(bandOrder, linesOfBand, 0, new int[size], bandWidth, orders);
+        }
+        return orders;
+    }
+
+    /**
+     * Adds every line order made of the bands in the given order, each band's lines taken in each of its
+     * arrangements.
+     */
+    private static void combine(int[] bandOrder, List<List<int[]>> linesOfBand, int position, int[] order,
+                                int bandWidth, List<int[]> orders) {
+        if (position == bandOrder.length) {
+            orders.add(order.clone());
+            return;
+        }
+        for (int[] lines : linesOfBand.get(bandOrder[position])) {
+            System.arraycopy(lines, 0, order, position * bandWidth, bandWidth);
+            combine(bandOrder, linesOfBand, position + 1, order, bandWidth, orders);
+        }
+    }
+
+    /**
+     * @param sorted indices sorted by key
+     * @return the number of arrangements of the indices that keep them sorted by key, at most one more than
+     * {@link #MAX_ORDERINGS}
+     */
+    private static long arrangements(long[] keys, int[] sorted) {
+        long count = 1;
+        for (int start = 0, end; start < sorted.length; start = end) {
+            end = start + 1;
+            while (end < sorted.length && keys[sorted[end]] == keys[sorted[start]]) {
+                count = Math.min(count * (end - start + 1), MAX_ORDERINGS + 1L);
+                ++end;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param sorted indices sorted by key
+     * @return every arrangement of the indices that keeps them sorted by key
+     */
+    private static List<int[]> permutations(long[] keys, int[] sorted) {
+        int[] runEnd = new int[sorted.length];
+        for (int start = 0, end; start < sorted.length; start = end) {
+            end = start + 1;
+            while (end < sorted.length && keys[sorted[end]] == keys[sorted[start]]) {
+                ++end;
+            }
+            for (int i = start; i < end; ++i) {
+                runEnd[i] = end;
+            }
+        }
+        List<int[]> permutations = new ArrayList<>();
+        permute(sorted.clone(), 0, runEnd, permutations);
+        return permutations;
+    }
+
+    private static void permute(int[] order, int position, int[] runEnd, List<int[]> permutations) {
+        if (position == order.length) {
+            permutations.add(order.clone());
+            return;
+        }
+        for (int i = position; i < runEnd[position]; ++i) {
+            swap(order, position, i);
+            permute(order, position + 1, runEnd, permutations);
+            swap(order, position, i);
+        }
+    }
+
+    private static void swap(int[] order, int first, int second) {
+        int swapped = order[first];
+        order[first] = order[second];
+        order[second] = swapped;
+    }
+
+    /**
+     * @return the indices {@code from .. from + length - 1}, stably sorted by descending key
+     */
+    private static int[] sortedIndices(long[] keys, int from, int length) {
+        int[] indices = new int[length];
+        for (int i = 0; i < length; ++i) {
+            int index = from + i, j = i;
+            while (j > 0 && keys[indices[j - 1]] < keys[index]) {
+                indices[j] = indices[j - 1];
+                --j;
+            }
+            indices[j] = index;
+        }
+        return indices;
+    }
+
+    /**
+     * Writes the board in the given line orders into {@code values}, numbering digits in order of first appearance,
+     * and stops early once it is larger than the best board so far.
+     *
+     * @param best the smallest board so far, or null for none
+     * @return whether the board is smaller than the best one
+     */
+    private boolean relabel(int[] board, int[] rowOrder, int[] columnOrder, boolean transposed, int[] best,
+                            int[] values, int[] labelOf) {
+        int size = geometry.getSize(), nextLabel = 1;
+        Arrays.fill(labelOf, 0);
+        boolean smaller = best == null;
+        for (int cell = 0; cell < values.length; ++cell) {
+            int value = board[cellOf(rowOrder[cell / size], columnOrder[cell % size], transposed)];
+            if (value != 0 && labelOf[value] == 0) {
+                labelOf[value] = nextLabel++;
+            }
+            values[cell] = labelOf[value];
+            if (!smaller) {
+                if (values[cell] > best[cell]) {
+                    return false;
+                }
+                smaller = values[cell] < best[cell];
+            }
+        }
+        return smaller;
+    }
+
+    private CanonicalForm form(int[] board, int[] rowOrder, int[] columnOrder, boolean transposed) {
+        int size = geometry.getSize(), cells = geometry.getCells();
+        int[] values = new int[cells], cellOf = new int[cells], digitOf = new int[size + 1], labelOf = new int[size + 1];
+        int nextLabel = 1;
+        for (int cell = 0; cell < cells; ++cell) {
+            int original = cellOf(rowOrder[cell / size], columnOrder[cell % size], transposed), value = board[original];
+            cellOf[cell] = original;
+            if (value != 0 && labelOf[value] == 0) {
+                labelOf[value] = nextLabel;
+                digitOf[nextLabel++] = value;
+            }
+            values[cell] = labelOf[value];
+        }
+        for (int value = 1; value <= size; ++value) {
+            if (labelOf[value] == 0) {
+                labelOf[value] = nextLabel;
+                digitOf[nextLabel++] = value;
+            }
+        }
+        return new CanonicalForm(geometry, values, cellOf, digitOf);
+    }
+
+    private int cellOf(int rowIndex, int columnIndex, boolean transposed) {
+        return transposed ? geometry.cellAt(columnIndex, rowIndex) : geometry.cellAt(rowIndex, columnIndex);
+    }
+}
@@ -0,0 +1,149 @@
+package in.tamchow.sudoku;
+
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * Tracks rule violations of a board incrementally.
+ * <p>
+ * Keeps how often each value occurs in each row, column and sub-grid, the number of (unit, value) pairs that occur
+ * more than once, and the number of filled cells. Changing a cell touches three counters, and whether the board is
+ * complete and free of conflicts is a comparison of two counters.
+ * <p>
+ * With variant {@link Rules}, changing a cell also rechecks the cells its rules relate it to, and the cells that
+ * break a rule count as conflicts too. Classic boards skip this entirely.
+ */
+public final class ConflictTracker {
+
+    private final Geometry geometry;
+    private final int stride;
+    private final int[] values, counts;
+    private final Rules rules;
+    private final BitSet violations = new BitSet();
+    private int conflicts, filled;
+
+    public ConflictTracker(Geometry geometry) {
+        this(geometry, null);
+    }
+
+    /**
+     * @param rules variant rules for this geometry, or null for classic rules
+     */
+    public ConflictTracker(Geometry geometry, Rules rules) {
+        this.geometry = geometry;
+        this.rules = rules;
+        stride = geometry.getSize() + 1;
+        values = new int[geometry.getCells()];
+        counts = new int[geometry.unitCount() * stride];
+    }
+
+    public void load(int[] board) {
+        for (int cell = 0; cell < values.length; ++cell) {
+            set(cell, board[cell], null);
+        }
+    }
+
+    /**
+     * @param cell    the cell being changed
+     * @param value   its new value, 0 to clear it
+     * @param changed receives every cell whose conflict state may have changed, or null
+     */
+    public void set(int cell, int value, IntConsumer changed) {
+        int previous = values[cell];
+        if (previous == value) {
+            return;
+        }
+        if (value < 0 || value > geometry.getSize()) {
+            throw new IllegalArgumentException("Value " + value + " out of range");
+        }
+        values[cell] = value;
+        if (previous != 0) {
+            --filled;
+        }
+        if (value != 0) {
+            ++filled;
+        }
+        int size = geometry.getSize();
+        update(geometry.rowOf(cell), previous, value, changed);
+        update(size + geometry.columnOf(cell), previous, value, changed);
+        update(2 * size + geometry.boxOf(cell), previous, value, changed);
+        if (rules != null) {
+            recheck(cell);
+            for (int other : rules.affected(cell)) {
+                if (recheck(other) && changed != null) {
+                    changed.accept(other);
+                }
+            }
+        }
+        if (changed != null) {
+            changed.accept(cell);
+        }
+    }
+
+    /**
+     * @return whether the cell started or stopped breaking a variant rule
+     */
+    private boolean recheck(int cell) {
+        boolean violated = rules.violates(values, cell);
+        if (violated == violations.get(cell)) {
+            return false;
+        }
+        violations.set(cell, violated);
+        return true;
+    }
+
+    private void update(int unit, int previous, int value, IntConsumer changed) {
+        if (previous != 0 && --counts[unit * stride + previous] == 1) {
+            --conflicts;
+            notifyHolders(unit, previous, changed);
+        }
+        if (value != 0 && ++counts[unit * stride + value] == 2) {
+            ++conflicts;
+            notifyHolders(unit, value, changed);
+        }
+    }
+
+    private void notifyHolders(int unit, int value, IntConsumer changed) {
+        if (changed != null) {
+            for (int cell : geometry.unit(unit)) {
+                if (values[cell] == value) {
+                    changed.accept(cell);
+                }
+            }
+        }
+    }
+
+    public int getValue(int cell) {
+        return values[cell];
+    }
+
+    /**
+     * @return whether the value of the cell occurs more than once in its row, column or sub-grid, or breaks a
+     * variant rule
+     */
+    public boolean isConflicting(int cell) {
+        int value = values[cell];
+        if (value == 0) {
+            return false;
+        }
+        int size = geometry.getSize();
+        return violations.get(cell) || counts[geometry.rowOf(cell) * stride + value] > 1 ||
+                counts[(size + geometry.columnOf(cell)) * stride + value] > 1 ||
+                counts[(2 * size + geometry.boxOf(cell)) * stride + value] > 1;
+    }
+
+    /**
+     * @return the number of (unit, value) pairs occurring more than once, plus the cells breaking a variant rule
+     */
+    public int getConflicts() {
+        return conflicts + violations.cardinality();
+    }
+
+    public int getFilled() {
+        return filled;
+    }
+
+    public boolean isSolved() {
+        return conflicts == 0 && violations.isEmpty() && filled == values.length;
+    }
+}
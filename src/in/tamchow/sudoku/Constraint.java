@@ -0,0 +1,37 @@
+package in.tamchow.sudoku;
+
+/**
+ * A variant rule on top of rows, columns and sub-grids, such as {@link DiagonalConstraint}, {@link KillerCage},
+ * {@link Thermometer} or {@link AntiKnightConstraint}.
+ * <p>
+ * A constraint describes itself in two parts, which {@link Rules} compiles once per board: regions of cells that
+ * must all hold different values, which become extra peers of their cells, and optionally a mask of the values a
+ * cell in its {@link #scope(Geometry) scope} may still take given the rest of the board, for rules that depend on
+ * the values themselves.
+ */
+public interface Constraint {
+
+    /**
+     * @return groups of cells that must all hold different values, possibly empty
+     */
+    int[][] regions(Geometry geometry);
+
+    /**
+     * @return the cells whose allowed values {@link #mask(Geometry, int[], int)} restricts, empty if it never does
+     */
+    default int[] scope(Geometry geometry) {
+        return new int[0];
+    }
+
+    /**
+     * Computes the values a cell in the scope may take, ignoring its current value. The mask may keep values that
+     * cannot lead to a solution, but must not drop any that can, and on a full board must drop exactly the values
+     * that break the rule.
+     *
+     * @param values row-major values, 0 for an empty cell
+     * @return bitmask of allowed values, bit {@code v - 1} standing for value {@code v}
+     */
+    default int mask(Geometry geometry, int[] values, int cell) {
+        return geometry.fullMask();
+    }
+}
@@ -0,0 +1,222 @@
+package in.tamchow.sudoku;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link PuzzleCorpus} file. Puzzles are streamed to one temporary file per board shape as they are added,
+ * so the heap holds only a buffer per shape; {@link #close()} then joins the sections and builds the index with a
+ * counting sort over the staged records.
+ */
+public final class CorpusWriter implements Closeable {
+
+    private final Path path;
+    private final Map<Geometry, Section> sections = new LinkedHashMap<>();
+    private boolean closed;
+
+    public CorpusWriter(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Adds a puzzle, grading it with {@link LogicalSolver} first.
+     *
+     * @return the number of puzzles of the same shape added before it
+     */
+    public long add(Puzzle puzzle) throws IOException {
+        return add(puzzle, null);
+    }
+
+    /**
+     * @param grade grade of the puzzle, or null to grade it here
+     * @return the number of puzzles of the same shape added before it
+     * @throws IllegalArgumentException if a given disagrees with the solution or a value is out of range
+     */
+    public long add(Puzzle puzzle, Grade grade) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Corpus already written");
+        }
+        Geometry geometry = puzzle.getGeometry();
+        Section section = sections.get(geometry);
+        if (section == null) {
+            if (sections.size() == 0xFF) {
+                throw new IllegalStateException("Too many board shapes for one corpus");
+            }
+            section = new Section(geometry, path.resolveSibling(path.getFileName() + "." + sections.size() + ".tmp"));
+            sections.put(geometry, section);
+        }
+        int[] givens = puzzle.getGivens(), solution = puzzle.getSolution();
+        if (grade == null) {
+            grade = section.grader().grade(givens);
+        }
+        int cells = geometry.getCells(), bits = PuzzleCorpus.bitsPerValue(geometry), maskLength = (cells + 7) / 8;
+        byte[] record = section.record;
+        Arrays.fill(record, (byte) 0);
+        record[0] = (byte) grade.ordinal();
+        for (int cell = 0; cell < cells; ++cell) {
+            int value = solution[cell];
+            if (value < 1 || value > geometry.getSize() || (givens[cell] != 0 && givens[cell] != value)) {
+                throw new IllegalArgumentException("Puzzle does not agree with its solution at cell " + cell);
+            }
+            if (givens[cell] != 0) {
+                record[1 + (cell >>> 3)] |= 0x80 >>> (cell & 7);
+            }
+            for (int bit = 0; bit < bits; ++bit) {
+                if (((value - 1) & (1 << (bits - 1 - bit))) != 0) {
+                    int position = cell * bits + bit;
+                    record[1 + maskLength + (position >>> 3)] |= 0x80 >>> (position & 7);
+                }
+            }
+        }
+        section.output.write(record);
+        return section.count++;
+    }
+
+    /**
+     * Writes the corpus and removes the temporary files.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            List<Section> ordered = new ArrayList<>(sections.values());
+            long offset = PuzzleCorpus.HEADER_LENGTH + (long) ordered.size() * PuzzleCorpus.SECTION_LENGTH;
+            for (Section section : ordered) {
+                section.output.close();
+                section.dataOffset = offset;
+                offset += section.count * section.record.length;
+            }
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path),
+                    1 << 16))) {
+                output.writeInt(PuzzleCorpus.MAGIC);
+                output.writeByte(PuzzleCorpus.VERSION);
+                output.writeByte(ordered.size());
+                output.writeLong(offset);
+                long firstId = 0;
+                for (Section section : ordered) {
+                    output.writeByte(section.geometry.getSize());
+                    output.writeByte(section.geometry.getBoxRows());
+                    output.writeLong(firstId);
+                    output.writeLong(section.count);
+                    output.writeLong(section.dataOffset);
+                    firstId += section.count;
+                }
+                for (Section section : ordered) {
+                    Files.copy(section.temporary, output);
+                }
+                writeIndex(ordered, output);
+            }
+        } finally {
+            for (Section section : sections.values()) {
+                section.output.close();
+                Files.deleteIfExists(section.temporary);
+            }
+        }
+    }
+
+    /**
+     * Sorts the records of each section by grade and clue count in two passes over the staged records, one counting
+     * the keys and one placing the ids, so only the id list of one section is held in memory at a time.
+     */
+    private static void writeIndex(List<Section> ordered, DataOutputStream output) throws IOException {
+        int grades = Grade.values().length;
+        List<long[]> entries = new ArrayList<>();
+        List<long[]> counts = new ArrayList<>();
+        long start = 0;
+        for (int i = 0; i < ordered.size(); ++i) {
+            Section section = ordered.get(i);
+            if (section.count > Integer.MAX_VALUE) {
+                throw new IOException("Too many " + section.geometry + " puzzles for one corpus");
+            }
+            int cells = section.geometry.getCells();
+            long[] sectionCounts = new long[grades * (cells + 1)];
+            try (DataInputStream records = section.records()) {
+                for (long id = 0; id < section.count; ++id) {
+                    ++sectionCounts[section.key(records)];
+                }
+            }
+            for (int key = 0; key < sectionCounts.length; ++key) {
+                if (sectionCounts[key] > 0) {
+                    entries.add(new long[]{i, key / (cells + 1), key % (cells + 1), start, sectionCounts[key]});
+                    start += sectionCounts[key];
+                }
+            }
+            counts.add(sectionCounts);
+        }
+        output.writeInt(entries.size());
+        for (long[] entry : entries) {
+            output.writeByte((int) entry[0]);
+            output.writeByte((int) entry[1]);
+            output.writeShort((int) entry[2]);
+            output.writeLong(entry[3]);
+            output.writeLong(entry[4]);
+        }
+        for (int i = 0; i < ordered.size(); ++i) {
+            Section section = ordered.get(i);
+            long[] sectionCounts = counts.get(i);
+            int[] next = new int[sectionCounts.length], ids = new int[(int) section.count];
+            for (int key = 1; key < next.length; ++key) {
+                next[key] = next[key - 1] + (int) sectionCounts[key - 1];
+            }
+            try (DataInputStream records = section.records()) {
+                for (int id = 0; id < ids.length; ++id) {
+                    ids[next[section.key(records)]++] = id;
+                }
+            }
+            for (int id : ids) {
+                output.writeInt(id);
+            }
+        }
+    }
+
+    private static final class Section {
+
+        final Geometry geometry;
+        final Path temporary;
+        final OutputStream output;
+        final byte[] record;
+        long count, dataOffset;
+        private LogicalSolver grader;
+
+        Section(Geometry geometry, Path temporary) throws IOException {
+            this.geometry = geometry;
+            this.temporary = temporary;
+            output = new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16);
+            record = new byte[PuzzleCorpus.recordLength(geometry)];
+        }
+
+        DataInputStream records() throws IOException {
+            return new DataInputStream(new BufferedInputStream(Files.newInputStream(temporary), 1 << 16));
+        }
+
+        /**
+         * Reads the next staged record.
+         *
+         * @return its grade and clue count folded into one index, grade major
+         */
+        int key(DataInputStream records) throws IOException {
+            records.readFully(record);
+            int clues = 0;
+            for (int i = 1, end = 1 + (geometry.getCells() + 7) / 8; i < end; ++i) {
+                clues += Integer.bitCount(record[i] & 0xFF);
+            }
+            return record[0] * (geometry.getCells() + 1) + clues;
+        }
+
+        LogicalSolver grader() {
+            if (grader == null) {
+                grader = new LogicalSolver(geometry);
+            }
+            return grader;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package in.tamchow.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Exact-cover solver using Knuth's Dancing Links.
+ * <p>
+ * Every candidate placement (cell, value) is a matrix row covering four constraints: the cell is filled, and the
+ * value appears once in its row, column and sub-grid. The toroidal linked list is kept in parallel int arrays and
+ * rebuilt from a pristine copy on each {@link #load(int[])}, so searching allocates nothing.
+ */
+public final class DancingLinksSolver implements Solver {
+
+    private static final int ROOT = 0;
+
+    private final Geometry geometry;
+    private final int size, columnCount;
+    private final int[] initialLeft, initialRight, initialUp, initialDown, initialColumnSizes;
+    private final int[] left, right, up, down, column, candidate, columnSizes;
+    private final int[] stack, solution;
+    private final boolean[] covered;
+    private int depth, solutionCount;
+    private boolean consistent;
+    private long nodes, backtracks;
+    private boolean aborted;
+    private SearchControl control;
+
+    public DancingLinksSolver(Geometry geometry) {
+        this.geometry = geometry;
+        size = geometry.getSize();
+        int cells = geometry.getCells(), candidates = cells * size;
+        columnCount = 4 * cells;
+        int nodeCount = columnCount + 1 + 4 * candidates;
+        left = new int[nodeCount];
+        right = new int[nodeCount];
+        up = new int[nodeCount];
+        down = new int[nodeCount];
+        column = new int[nodeCount];
+        candidate = new int[nodeCount];
+        columnSizes = new int[columnCount + 1];
+        for (int header = 0; header <= columnCount; ++header) {
+            left[header] = header == 0 ? columnCount : header - 1;
+            right[header] = header == columnCount ? 0 : header + 1;
+            up[header] = down[header] = column[header] = header;
+        }
+        for (int cell = 0; cell < cells; ++cell) {
+            int rowIndex = geometry.rowOf(cell), columnIndex = geometry.columnOf(cell), boxIndex = geometry.boxOf(cell);
+            for (int value = 0; value < size; ++value) {
+                int first = firstNode(cell, value);
+                int[] headers = {
+                        1 + cell,
+                        1 + cells + rowIndex * size + value,
+                        1 + 2 * cells + columnIndex * size + value,
+                        1 + 3 * cells + boxIndex * size + value
+                };
+                for (int offset = 0; offset < 4; ++offset) {
+                    int node = first + offset, header = headers[offset];
+                    left[node] = first + (offset + 3) % 4;
+                    right[node] = first + (offset + 1) % 4;
+                    column[node] = header;
+                    candidate[node] = cell * size + value;
+                    up[node] = up[header];
+                    down[node] = header;
+                    down[up[header]] = node;
+                    up[header] = node;
+                    ++columnSizes[header];
+                }
+            }
+        }
+        initialLeft = left.clone();
+        initialRight = right.clone();
+        initialUp = up.clone();
+        initialDown = down.clone();
+        initialColumnSizes = columnSizes.clone();
+        covered = new boolean[columnCount + 1];
+        stack = new int[cells];
+        solution = new int[cells];
+    }
+
+    private int firstNode(int cell, int value) {
+        return columnCount + 1 + 4 * (cell * size + value);
+    }
+
+    @Override
+    public boolean load(int[] board) {
+        if (board.length != geometry.getCells()) {
+            throw new IllegalArgumentException("Expected " + geometry.getCells() + " cells, got " + board.length);
+        }
+        System.arraycopy(initialLeft, 0, left, 0, left.length);
+        System.arraycopy(initialRight, 0, right, 0, right.length);
+        System.arraycopy(initialUp, 0, up, 0, up.length);
+        System.arraycopy(initialDown, 0, down, 0, down.length);
+        System.arraycopy(initialColumnSizes, 0, columnSizes, 0, columnSizes.length);
+        Arrays.fill(covered, false);
+        nodes = backtracks = 0;
+        depth = solutionCount = 0;
+        consistent = true;
+        for (int cell = 0; cell < board.length; ++cell) {
+            int value = board[cell];
+            if (value == 0) {
+                continue;
+            }
+            if (value < 0 || value > size) {
+                consistent = false;
+                continue;
+            }
+            int first = firstNode(cell, value - 1);
+            boolean free = true;
+            for (int offset = 0; offset < 4; ++offset) {
+                free &= !covered[column[first + offset]];
+            }
+            if (!free) {
+                consistent = false;
+                continue;
+            }
+            for (int offset = 0; offset < 4; ++offset) {
+                cover(column[first + offset]);
+            }
+        }
+        System.arraycopy(board, 0, solution, 0, board.length);
+        return consistent;
+    }
+
+    @Override
+    public boolean solve() {
+        return countSolutions(1) > 0;
+    }
+
+    @Override
+    public int countSolutions(int limit) {
+        solutionCount = 0;
+        aborted = false;
+        long startNodes = nodes, startBacktracks = backtracks;
+        if (consistent && limit > 0) {
+            search(limit);
+        }
+        if (control != null) {
+            control.poll(nodes, depth);
+        }
+        EngineMetrics.get().recordSearch(nodes - startNodes, backtracks - startBacktracks, 0);
+        return solutionCount;
+    }
+
+    @Override
+    public int[] getSolution() {
+        return solutionCount > 0 ? solution.clone() : null;
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    @Override
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    @Override
+    public void setControl(SearchControl control) {
+        this.control = control;
+    }
+
+    private boolean search(int limit) {
+        if ((++nodes & (SearchControl.POLL_INTERVAL - 1)) == 0 && control != null && control.poll(nodes, depth)) {
+            aborted = true;
+            return true;
+        }
+        if (right[ROOT] == ROOT) {
+            if (solutionCount++ == 0) {
+                for (int i = 0; i < depth; ++i) {
+                    int placement = candidate[stack[i]];
+                    solution[placement / size] = placement % size + 1;
+                }
+            }
+            return solutionCount >= limit;
+        }
+        int chosen = right[ROOT];
+        for (int header = right[chosen]; header != ROOT && columnSizes[chosen] > 1; header = right[header]) {
+            if (columnSizes[header] < columnSizes[chosen]) {
+                chosen = header;
+            }
+        }
+        if (columnSizes[chosen] == 0) {
+            ++backtracks;
+            return false;
+        }
+        cover(chosen);
+        for (int row = down[chosen]; row != chosen; row = down[row]) {
+            stack[depth++] = row;
+            for (int node = right[row]; node != row; node = right[node]) {
+                cover(column[node]);
+            }
+            boolean stop = search(limit);
+            for (int node = left[row]; node != row; node = left[node]) {
+                uncover(column[node]);
+            }
+            --depth;
+            if (stop) {
+                uncover(chosen);
+                return true;
+            }
+        }
+        uncover(chosen);
+        ++backtracks;
+        return false;
+    }
+
+    private void cover(int header) {
+        covered[header] = true;
+        right[left[header]] = right[header];
+        left[right[header]] = left[header];
+        for (int row = down[header]; row != header; row = down[row]) {
+            for (int node = right[row]; node != row; node = right[node]) {
+                down[up[node]] = down[node];
+                up[down[node]] = up[node];
+                --columnSizes[column[node]];
+            }
+        }
+    }
+
+    private void uncover(int header) {
+        for (int row = up[header]; row != header; row = up[row]) {
+            for (int node = left[row]; node != row; node = left[node]) {
+                ++columnSizes[column[node]];
+                down[up[node]] = node;
+                up[down[node]] = node;
+            }
+        }
+        right[left[header]] = header;
+        left[right[header]] = header;
+        covered[header] = false;
+    }
+}
@@ -0,0 +1,88 @@
+package in.tamchow.sudoku;
+
+/**
+ * One step of a logical solve: either a value placed in a cell, or candidates eliminated from some cells.
+ */
+public final class Deduction {
+
+    private final Technique technique;
+    private final int size, cell, value;
+    private final int[] eliminationCells, eliminationMasks;
+
+    private Deduction(Technique technique, int size, int cell, int value, int[] eliminationCells, int[] eliminationMasks) {
+        this.technique = technique;
+        this.size = size;
+        this.cell = cell;
+        this.value = value;
+        this.eliminationCells = eliminationCells;
+        this.eliminationMasks = eliminationMasks;
+    }
+
+    static Deduction placement(Technique technique, int size, int cell, int value) {
+        return new Deduction(technique, size, cell, value, new int[0], new int[0]);
+    }
+
+    static Deduction elimination(Technique technique, int size, int[] cells, int[] masks) {
+        return new Deduction(technique, size, -1, 0, cells, masks);
+    }
+
+    public Technique getTechnique() {
+        return technique;
+    }
+
+    public boolean isPlacement() {
+        return cell >= 0;
+    }
+
+    /**
+     * @return the cell a value is placed in, or -1 for an elimination
+     */
+    public int getCell() {
+        return cell;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * @return the cells losing candidates; callers must not modify the returned array
+     */
+    public int[] getEliminationCells() {
+        return eliminationCells;
+    }
+
+    /**
+     * @return for each elimination cell, the bitmask of candidates it loses; callers must not modify the returned array
+     */
+    public int[] getEliminationMasks() {
+        return eliminationMasks;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder accumulator = new StringBuilder(technique.getDisplayName()).append(": ");
+        if (isPlacement()) {
+            return accumulator.append(name(cell)).append(" = ").append(value).toString();
+        }
+        accumulator.append("remove ");
+        for (int i = 0; i < eliminationCells.length; ++i) {
+            if (i > 0) {
+                accumulator.append(", ");
+            }
+            int mask = eliminationMasks[i];
+            for (int remaining = mask; remaining != 0; remaining &= remaining - 1) {
+                accumulator.append(Integer.numberOfTrailingZeros(remaining) + 1);
+                if ((remaining & (remaining - 1)) != 0) {
+                    accumulator.append('/');
+                }
+            }
+            accumulator.append(" from ").append(name(eliminationCells[i]));
+        }
+        return accumulator.toString();
+    }
+
+    private String name(int target) {
+        return "r" + (target / size + 1) + "c" + (target % size + 1);
+    }
+}
@@ -0,0 +1,18 @@
+package in.tamchow.sudoku;
+
+/**
+ * X-Sudoku: both main diagonals hold every value once.
+ */
+public final class DiagonalConstraint implements Constraint {
+
+    @Override
+    public int[][] regions(Geometry geometry) {
+        int size = geometry.getSize();
+        int[][] diagonals = new int[2][size];
+        for (int i = 0; i < size; ++i) {
+            diagonals[0][i] = geometry.cellAt(i, i);
+            diagonals[1][i] = geometry.cellAt(i, size - 1 - i);
+        }
+        return diagonals;
+    }
+}
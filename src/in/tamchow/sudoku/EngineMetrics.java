@@ -0,0 +1,314 @@
+package in.tamchow.sudoku;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters and latency histograms of the solvers, the generator, the puzzle pool and the solution
+ * cache.
+ * <p>
+ * Solvers count into plain fields while searching and add them here once per search, so the hot loops stay free of
+ * shared writes. Everything is readable through JMX once {@link #register()} has been called, and while a Flight
+ * Recorder recording is running each solve, generation, restart and pool take is also committed as a JFR event in
+ * the {@code Sudoku} category.
+ */
+public final class EngineMetrics implements EngineMetricsMXBean {
+
+    public static final String OBJECT_NAME = "in.tamchow.sudoku:type=EngineMetrics";
+
+    /**
+     * Why the generator threw an attempt away and started another.
+     */
+    public enum RestartCause {
+        FILL_ABORTED,
+        CLUE_TARGET_MISSED,
+        GRADE_MISSED
+    }
+
+    private static final boolean FLIGHT_RECORDER = flightRecorderAvailable();
+
+    private static final class Holder {
+        private static final EngineMetrics INSTANCE = new EngineMetrics();
+    }
+
+    private final LongAdder nodes = new LongAdder(), backtracks = new LongAdder(), candidateChecks = new LongAdder();
+    private final LongAdder poolHits = new LongAdder(), poolMisses = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder(), cacheMisses = new LongAdder(),
+            cacheEvictions = new LongAdder();
+    private final LongAdder[] restarts = new LongAdder[RestartCause.values().length];
+    private final LongAdder[] portfolioWins = new LongAdder[PortfolioSolver.Strategy.values().length];
+    private final LatencyHistogram solveLatency = new LatencyHistogram(), generateLatency = new LatencyHistogram();
+
+    private EngineMetrics() {
+        for (int i = 0; i < restarts.length; ++i) {
+            restarts[i] = new LongAdder();
+        }
+        for (int i = 0; i < portfolioWins.length; ++i) {
+            portfolioWins[i] = new LongAdder();
+        }
+    }
+
+    public static EngineMetrics get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under {@value #OBJECT_NAME}. Calling it again does nothing.
+     */
+    public static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(get(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // already registered
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    void recordSearch(long searchNodes, long searchBacktracks, long searchCandidateChecks) {
+        nodes.add(searchNodes);
+        backtracks.add(searchBacktracks);
+        candidateChecks.add(searchCandidateChecks);
+    }
+
+    void recordSolve(SolverMode mode, int size, long searchNodes, boolean solved, long elapsedNanos) {
+        solveLatency.record(elapsedNanos);
+        if (recording()) {
+            FlightRecorderEvents.solve(mode.name(), size, searchNodes, solved, elapsedNanos);
+        }
+    }
+
+    void recordGeneration(int size, int clues, int attempts, long elapsedNanos) {
+        generateLatency.record(elapsedNanos);
+        if (recording()) {
+            FlightRecorderEvents.generate(size, clues, attempts, elapsedNanos);
+        }
+    }
+
+    void recordRestart(RestartCause cause, int size) {
+        restarts[cause.ordinal()].increment();
+        if (recording()) {
+            FlightRecorderEvents.restart(cause.name(), size);
+        }
+    }
+
+    void recordPoolTake(int size, boolean hit) {
+        (hit ? poolHits : poolMisses).increment();
+        if (recording()) {
+            FlightRecorderEvents.poolTake(size, hit);
+        }
+    }
+
+    void recordCacheLookup(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    void recordCacheEviction() {
+        cacheEvictions.increment();
+    }
+
+    void recordPortfolioWin(PortfolioSolver.Strategy strategy) {
+        portfolioWins[strategy.ordinal()].increment();
+    }
+
+    public long getPortfolioWins(PortfolioSolver.Strategy strategy) {
+        return portfolioWins[strategy.ordinal()].sum();
+    }
+
+    /**
+     * @return the share of portfolio races won by the strategy, 0 if none has been run
+     */
+    public double getPortfolioWinRate(PortfolioSolver.Strategy strategy) {
+        long races = 0;
+        for (LongAdder wins : portfolioWins) {
+            races += wins.sum();
+        }
+        return races == 0 ? 0 : (double) getPortfolioWins(strategy) / races;
+    }
+
+    @Override
+    public Map<String, Long> getPortfolioWins() {
+        Map<String, Long> wins = new LinkedHashMap<>();
+        for (PortfolioSolver.Strategy strategy : PortfolioSolver.Strategy.values()) {
+            wins.put(strategy.name(), getPortfolioWins(strategy));
+        }
+        return wins;
+    }
+
+    public long getRestarts(RestartCause cause) {
+        return restarts[cause.ordinal()].sum();
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    @Override
+    public long getBacktracks() {
+        return backtracks.sum();
+    }
+
+    @Override
+    public long getCandidateChecks() {
+        return candidateChecks.sum();
+    }
+
+    @Override
+    public long getSolves() {
+        return solveLatency.getCount();
+    }
+
+    @Override
+    public double getSolveLatencyMean() {
+        return solveLatency.getMean() / 1000;
+    }
+
+    @Override
+    public long getSolveLatencyP50() {
+        return micros(solveLatency.getPercentile(50));
+    }
+
+    @Override
+    public long getSolveLatencyP99() {
+        return micros(solveLatency.getPercentile(99));
+    }
+
+    @Override
+    public long getSolveLatencyMax() {
+        return micros(solveLatency.getMax());
+    }
+
+    @Override
+    public long getGenerations() {
+        return generateLatency.getCount();
+    }
+
+    @Override
+    public double getGenerateLatencyMean() {
+        return generateLatency.getMean() / 1000;
+    }
+
+    @Override
+    public long getGenerateLatencyP50() {
+        return micros(generateLatency.getPercentile(50));
+    }
+
+    @Override
+    public long getGenerateLatencyP99() {
+        return micros(generateLatency.getPercentile(99));
+    }
+
+    @Override
+    public long getGenerateLatencyMax() {
+        return micros(generateLatency.getMax());
+    }
+
+    @Override
+    public long getFillRestarts() {
+        return getRestarts(RestartCause.FILL_ABORTED);
+    }
+
+    @Override
+    public long getClueTargetRestarts() {
+        return getRestarts(RestartCause.CLUE_TARGET_MISSED);
+    }
+
+    @Override
+    public long getGradeRestarts() {
+        return getRestarts(RestartCause.GRADE_MISSED);
+    }
+
+    @Override
+    public long getPoolHits() {
+        return poolHits.sum();
+    }
+
+    @Override
+    public long getPoolMisses() {
+        return poolMisses.sum();
+    }
+
+    @Override
+    public double getPoolHitRate() {
+        long hits = poolHits.sum(), total = hits + poolMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return cacheEvictions.sum();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        long hits = cacheHits.sum(), total = hits + cacheMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public void reset() {
+        nodes.reset();
+        backtracks.reset();
+        candidateChecks.reset();
+        poolHits.reset();
+        poolMisses.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        cacheEvictions.reset();
+        for (LongAdder restart : restarts) {
+            restart.reset();
+        }
+        for (LongAdder wins : portfolioWins) {
+            wins.reset();
+        }
+        solveLatency.reset();
+        generateLatency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d nodes, %d backtracks, %d candidate checks%nsolve %s%ngenerate %s%n" +
+                        "restarts: %d fill, %d clue target, %d grade; pool hit rate %.1f%%, cache hit rate %.1f%%",
+                getNodes(), getBacktracks(), getCandidateChecks(), solveLatency, generateLatency,
+                getFillRestarts(), getClueTargetRestarts(), getGradeRestarts(), 100 * getPoolHitRate(),
+                100 * getCacheHitRate());
+    }
+
+    private static boolean recording() {
+        return FLIGHT_RECORDER && FlightRecorderEvents.isRecording();
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Flight Recorder is part of the platform from Java 11 and of some Java 8 builds; the event classes are only
+     * touched when it is present.
+     */
+    private static boolean flightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, EngineMetrics.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
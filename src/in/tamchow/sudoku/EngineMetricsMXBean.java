@@ -0,0 +1,79 @@
+package in.tamchow.sudoku;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link EngineMetrics}, registered as {@value EngineMetrics#OBJECT_NAME}. Latencies are in
+ * microseconds.
+ */
+public interface EngineMetricsMXBean {
+
+    long getNodes();
+
+    long getBacktracks();
+
+    /**
+     * @return the number of cell candidate computations, each of which stands in for one legality check of the
+     * old backtracking solver
+     */
+    long getCandidateChecks();
+
+    long getSolves();
+
+    double getSolveLatencyMean();
+
+    long getSolveLatencyP50();
+
+    long getSolveLatencyP99();
+
+    long getSolveLatencyMax();
+
+    long getGenerations();
+
+    double getGenerateLatencyMean();
+
+    long getGenerateLatencyP50();
+
+    long getGenerateLatencyP99();
+
+    long getGenerateLatencyMax();
+
+    /**
+     * @return attempts abandoned because the random solution could not be completed within the node budget
+     */
+    long getFillRestarts();
+
+    /**
+     * @return attempts retried because they kept more clues than the target
+     */
+    long getClueTargetRestarts();
+
+    /**
+     * @return attempts retried because their grade missed the target grade
+     */
+    long getGradeRestarts();
+
+    /**
+     * @return races won by each {@link PortfolioSolver} strategy
+     */
+    Map<String, Long> getPortfolioWins();
+
+    long getPoolHits();
+
+    long getPoolMisses();
+
+    double getPoolHitRate();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    /**
+     * @return solutions dropped from a full {@link SolutionCache} to make room
+     */
+    long getCacheEvictions();
+
+    double getCacheHitRate();
+
+    void reset();
+}
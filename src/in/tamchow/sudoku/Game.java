@@ -0,0 +1,201 @@
+package in.tamchow.sudoku;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * A game in progress, independent of any user interface: the board, its rule violations, and solving and hints on
+ * top of them.
+ * <p>
+ * A game holds only a few primitive arrays sized to its board; the {@link Geometry} is shared by all games of a
+ * shape, and solvers are created per call. Many games can therefore live side by side in one JVM, e.g. behind a
+ * server, and nothing here touches AWT. A game is not thread-safe; confine each one to a thread or lock around it.
+ * <p>
+ * A game may carry variant {@link Rules}, which conflict tracking, solving and enumeration then respect. Hints
+ * still come from the classic techniques, which stay sound under extra rules.
+ */
+public final class Game {
+
+    private final Geometry geometry;
+    private final Board board;
+    private final ConflictTracker conflicts;
+    private final Rules rules;
+
+    private Game(Board board, Rules rules) {
+        this.geometry = board.getGeometry();
+        this.board = board;
+        this.rules = rules;
+        conflicts = new ConflictTracker(geometry, rules);
+        conflicts.load(board.getValues());
+    }
+
+    /**
+     * Starts a game from the shared {@link PuzzlePool}, aiming for the {@link Grade#forDifficulty(double) grade of
+     * the difficulty} without going below the clue count it maps to between the fill limits.
+     *
+     * @see PuzzleGenerator#PuzzleGenerator(Geometry, double, int, int, java.util.Random)
+     */
+    public static Game newGame(Geometry geometry, double difficulty, int lowerFillLimit, int upperFillLimit) {
+        return of(PuzzlePool.shared().take(geometry, difficulty, lowerFillLimit, upperFillLimit,
+                Grade.forDifficulty(difficulty)));
+    }
+
+    /**
+     * Starts a game from the shared {@link PuzzlePool} without generating on the calling thread, e.g. the event
+     * dispatch thread.
+     *
+     * @return a future completed with the game, see {@link PuzzlePool#takeAsync}
+     */
+    public static CompletableFuture<Game> newGameAsync(Geometry geometry, double difficulty, int lowerFillLimit,
+                                                       int upperFillLimit) {
+        return PuzzlePool.shared().takeAsync(geometry, difficulty, lowerFillLimit, upperFillLimit,
+                Grade.forDifficulty(difficulty)).thenApply(Game::of);
+    }
+
+    public static Game of(Puzzle puzzle) {
+        return of(puzzle, null);
+    }
+
+    /**
+     * @param rules variant rules for the puzzle's geometry, or null for classic rules
+     */
+    public static Game of(Puzzle puzzle, Rules rules) {
+        return new Game(Board.of(puzzle), rules);
+    }
+
+    /**
+     * Continues a game from a board, e.g. one restored by {@link GameStore}. The board is copied.
+     */
+    public static Game of(Board board) {
+        return of(board, null);
+    }
+
+    /**
+     * @param rules variant rules for the board's geometry, or null for classic rules
+     */
+    public static Game of(Board board, Rules rules) {
+        return new Game(board.copy(), rules);
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * @return the variant rules of the game, or null for classic rules
+     */
+    public Rules getRules() {
+        return rules;
+    }
+
+    public int getValue(int cell) {
+        return board.getValue(cell);
+    }
+
+    public boolean isFixed(int cell) {
+        return board.isFixed(cell);
+    }
+
+    /**
+     * @param cell    a cell that is not fixed
+     * @param value   its new value, 0 to clear it
+     * @param changed receives every cell whose conflict state may have changed, or null
+     * @throws IllegalArgumentException if the value is out of range or the cell is fixed
+     */
+    public void set(int cell, int value, IntConsumer changed) {
+        board.setValue(cell, value);
+        conflicts.set(cell, value, changed);
+    }
+
+    /**
+     * @return whether the value of the cell occurs more than once in its row, column or sub-grid, or breaks a
+     * variant rule
+     */
+    public boolean isConflicting(int cell) {
+        return conflicts.isConflicting(cell);
+    }
+
+    /**
+     * @return the number of (unit, value) pairs occurring more than once, plus the cells breaking a variant rule
+     */
+    public int getConflicts() {
+        return conflicts.getConflicts();
+    }
+
+    public int getFilled() {
+        return conflicts.getFilled();
+    }
+
+    public boolean isSolved() {
+        return conflicts.isSolved();
+    }
+
+    /**
+     * @return a copy of the board, e.g. for saving
+     */
+    public Board getBoard() {
+        return board.copy();
+    }
+
+    /**
+     * @return a copy of the row-major values, 0 for an empty cell
+     */
+    public int[] getValues() {
+        return board.getValues();
+    }
+
+    /**
+     * Solves the board as it stands, including the entries made so far, and fills the free cells with the
+     * solution if there is one.
+     *
+     * @param changed receives every cell whose conflict state may have changed, or null
+     */
+    public SolveResult solve(SolverMode mode, IntConsumer changed) {
+        SolveResult result = mode.solve(geometry, board.getValues(), null, rules);
+        applySolution(result, changed);
+        return result;
+    }
+
+    /**
+     * Enumerates the solutions of the board as it stands without changing it, e.g. to study an under-constrained
+     * board.
+     *
+     * @return a lazy stream of at most {@code limit} solutions, see {@link SolutionSpliterator}
+     */
+    public Stream<int[]> solutions(long limit) {
+        return SolutionSpliterator.stream(geometry, board.getValues(), limit, rules);
+    }
+
+    /**
+     * Fills the free cells with the solution of a solve run elsewhere, e.g. by {@link AsyncSolver}.
+     *
+     * @param changed receives every cell whose conflict state may have changed, or null
+     * @return false if the result holds no solution
+     */
+    public boolean applySolution(SolveResult result, IntConsumer changed) {
+        int[] solution = result.getSolution();
+        if (solution == null) {
+            return false;
+        }
+        for (int cell = 0; cell < solution.length; ++cell) {
+            if (!board.isFixed(cell)) {
+                set(cell, solution[cell], changed);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the next logical step from the board as it stands, or null if there is none because the board has
+     * conflicts, is solved, or needs guessing
+     */
+    public Deduction hint() {
+        if (conflicts.getConflicts() > 0 || conflicts.isSolved()) {
+            return null;
+        }
+        LogicalSolver solver = new LogicalSolver(geometry);
+        solver.load(board.getValues());
+        return solver.nextDeduction();
+    }
+}
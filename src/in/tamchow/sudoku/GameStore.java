@@ -0,0 +1,205 @@
+package in.tamchow.sudoku;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.zip.CRC32;
+
+/**
+ * Persists a {@link Board} as a compact binary snapshot plus an append-only journal of moves.
+ * <p>
+ * Snapshot layout, big-endian: the magic {@code "SDKU"}, a version byte, the board side and sub-grid size as bytes,
+ * the number of bits per value, the values packed at that width (a nibble each up to 15 values), the fixed-cell
+ * bitset, and a CRC-32 of everything before it. A journal record is a 16-bit cell index followed by a value byte.
+ * <p>
+ * {@link #record(Board, int)} appends one record per move, which is cheap enough to call on every keystroke. After
+ * {@link #COMPACTION_THRESHOLD} records the board is folded into a new snapshot and the journal starts over.
+ * Restoring reads the snapshot and replays the journal, ignoring a torn final record. Replay is idempotent, so a
+ * journal left behind by a crash between writing a snapshot and truncating the journal restores correctly.
+ */
+public final class GameStore implements Closeable {
+
+    public static final int MAGIC = 0x53444B55, VERSION = 1, COMPACTION_THRESHOLD = 256;
+    private static final int RECORD_LENGTH = 3;
+
+    private final Path snapshotPath, journalPath;
+    private DataOutputStream journal;
+    private int journalRecords;
+
+    public GameStore(Path snapshotPath, Path journalPath) {
+        this.snapshotPath = snapshotPath;
+        this.journalPath = journalPath;
+    }
+
+    /**
+     * Writes a snapshot of the board and starts an empty journal.
+     */
+    public synchronized void save(Board board) throws IOException {
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+            output.write(encode(board));
+        }
+        try {
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        closeJournal();
+        journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)));
+        journalRecords = 0;
+    }
+
+    /**
+     * Appends the current value of a cell to the journal, compacting once the journal is long enough.
+     *
+     * @throws IllegalStateException if nothing has been saved or restored through this store yet
+     */
+    public synchronized void record(Board board, int cell) throws IOException {
+        if (journal == null) {
+            throw new IllegalStateException("No snapshot to journal against");
+        }
+        if (journalRecords >= COMPACTION_THRESHOLD) {
+            save(board);
+            return;
+        }
+        journal.writeShort(cell);
+        journal.writeByte(board.getValue(cell));
+        journal.flush();
+        ++journalRecords;
+    }
+
+    /**
+     * Loads the snapshot, replays the journal over it and continues journaling after it.
+     */
+    public synchronized Board restore() throws IOException {
+        Board board = decode(Files.readAllBytes(snapshotPath));
+        int records = 0;
+        if (Files.exists(journalPath)) {
+            byte[] moves = Files.readAllBytes(journalPath);
+            for (int offset = 0; offset + RECORD_LENGTH <= moves.length; offset += RECORD_LENGTH, ++records) {
+                int cell = ((moves[offset] & 0xFF) << 8) | (moves[offset + 1] & 0xFF), value = moves[offset + 2] & 0xFF;
+                if (cell >= board.getGeometry().getCells() || board.isFixed(cell) ||
+                        value > board.getGeometry().getSize()) {
+                    throw new IOException("Journal does not match the snapshot at record " + records);
+                }
+                board.setValue(cell, value);
+            }
+        }
+        closeJournal();
+        if (Files.exists(journalPath) && Files.size(journalPath) != (long) records * RECORD_LENGTH) {
+            try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                channel.truncate((long) records * RECORD_LENGTH);
+            }
+        }
+        if (records >= COMPACTION_THRESHOLD) {
+            save(board);
+        } else {
+            journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            journalRecords = records;
+        }
+        return board;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeJournal();
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    public static byte[] encode(Board board) {
+        Geometry geometry = board.getGeometry();
+        int cells = geometry.getCells(), bitsPerValue = bitsPerValue(geometry.getSize());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+                12 + (cells * bitsPerValue + 7) / 8 + (cells + 7) / 8);
+        DataOutputStream output = new DataOutputStream(buffer);
+        try {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeByte(geometry.getSize());
+            output.writeByte(geometry.getBoxRows());
+            output.writeByte(bitsPerValue);
+            byte[] packed = new byte[(cells * bitsPerValue + 7) / 8], fixed = new byte[(cells + 7) / 8];
+            for (int cell = 0; cell < cells; ++cell) {
+                int value = board.getValue(cell);
+                for (int bit = 0; bit < bitsPerValue; ++bit) {
+                    if ((value & (1 << (bitsPerValue - 1 - bit))) != 0) {
+                        int position = cell * bitsPerValue + bit;
+                        packed[position >>> 3] |= 0x80 >>> (position & 7);
+                    }
+                }
+                if (board.isFixed(cell)) {
+                    fixed[cell >>> 3] |= 0x80 >>> (cell & 7);
+                }
+            }
+            output.write(packed);
+            output.write(fixed);
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.toByteArray());
+            output.writeInt((int) checksum.getValue());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    public static Board decode(byte[] snapshot) throws IOException {
+        if (snapshot.length < 12) {
+            throw new IOException("Snapshot truncated");
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(snapshot, 0, snapshot.length - 4);
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(snapshot));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a saved game");
+        }
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported save version " + version);
+        }
+        int size = input.readUnsignedByte(), boxRows = input.readUnsignedByte(), bitsPerValue = input.readUnsignedByte();
+        Geometry geometry;
+        try {
+            if (boxRows == 0 || size % boxRows != 0) {
+                throw new IllegalArgumentException("Sub-grids of " + boxRows + " rows do not fit a side of " + size);
+            }
+            geometry = Geometry.of(size, size, boxRows, size / boxRows);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        int cells = geometry.getCells();
+        if (bitsPerValue != bitsPerValue(size) || snapshot.length != 12 + (cells * bitsPerValue + 7) / 8 + (cells + 7) / 8) {
+            throw new IOException("Snapshot does not match a " + size + "x" + size + " board");
+        }
+        byte[] packed = new byte[(cells * bitsPerValue + 7) / 8], fixed = new byte[(cells + 7) / 8];
+        input.readFully(packed);
+        input.readFully(fixed);
+        if (input.readInt() != (int) checksum.getValue()) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+        Board board = new Board(geometry);
+        for (int cell = 0; cell < cells; ++cell) {
+            int value = 0;
+            for (int bit = 0; bit < bitsPerValue; ++bit) {
+                int position = cell * bitsPerValue + bit;
+                value = (value << 1) | ((packed[position >>> 3] >>> (7 - (position & 7))) & 1);
+            }
+            if (value > size) {
+                throw new IOException("Value " + value + " out of range at cell " + cell);
+            }
+            board.setCell(cell, value, (fixed[cell >>> 3] & (0x80 >>> (cell & 7))) != 0);
+        }
+        return board;
+    }
+
+    private static int bitsPerValue(int size) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(size);
+    }
+}
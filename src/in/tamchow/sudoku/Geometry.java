@@ -0,0 +1,186 @@
+package in.tamchow.sudoku;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index tables for a square board of side {@code boxRows * boxColumns}, laid out row-major in a flat array, with
+ * boxes of {@code boxRows} rows by {@code boxColumns} columns, e.g. 3x3 on 9x9 or 2x3 on 6x6.
+ * A unit is a row, a column or a sub-grid; units are numbered rows first, then columns, then sub-grids.
+ * <p>
+ * All lookups a solver needs are compiled once per shape: the row, column and sub-grid of each cell, the cells of
+ * each unit, and a flat list of the peers of each cell, i.e. the other cells sharing a unit with it. Instances are
+ * immutable, so {@link #of(int, int, int, int)} hands out one shared instance per shape.
+ */
+public final class Geometry {
+
+    private static final ConcurrentMap<List<Integer>, Geometry> SHAPES = new ConcurrentHashMap<>();
+
+    private final int size, boxRows, boxColumns, cells, peerCount;
+    private final int[] rowOf, columnOf, boxOf, peers;
+    private final int[][] units;
+
+    /**
+     * Creates the geometry of a board with square sub-grids.
+     */
+    public Geometry(int rows, int columns, int subGridSize) {
+        this(rows, columns, subGridSize, subGridSize);
+    }
+
+    public Geometry(int rows, int columns, int boxRows, int boxColumns) {
+        if (boxRows < 1 || boxColumns < 1 || rows != columns || rows != boxRows * boxColumns) {
+            throw new IllegalArgumentException("Unsupported board shape " + rows + "x" + columns +
+                    " with " + boxRows + "x" + boxColumns + " sub-grids");
+        }
+        if (rows > Integer.SIZE - 1) {
+            throw new IllegalArgumentException("Board side " + rows + " does not fit a candidate bitmask");
+        }
+        this.size = rows;
+        this.boxRows = boxRows;
+        this.boxColumns = boxColumns;
+        this.cells = size * size;
+        rowOf = new int[cells];
+        columnOf = new int[cells];
+        boxOf = new int[cells];
+        units = new int[3 * size][size];
+        int[] boxFill = new int[size];
+        int boxesPerBand = size / boxColumns;
+        for (int cell = 0; cell < cells; ++cell) {
+            int rowIndex = cell / size, columnIndex = cell % size;
+            int boxIndex = (rowIndex / boxRows) * boxesPerBand + columnIndex / boxColumns;
+            rowOf[cell] = rowIndex;
+            columnOf[cell] = columnIndex;
+            boxOf[cell] = boxIndex;
+            units[rowIndex][columnIndex] = cell;
+            units[size + columnIndex][rowIndex] = cell;
+            units[2 * size + boxIndex][boxFill[boxIndex]++] = cell;
+        }
+        peerCount = 3 * size - boxRows - boxColumns - 1;
+        peers = new int[cells * peerCount];
+        for (int cell = 0, next = 0; cell < cells; ++cell) {
+            for (int peer = 0; peer < cells; ++peer) {
+                if (peer != cell && (rowOf[peer] == rowOf[cell] || columnOf[peer] == columnOf[cell] ||
+                        boxOf[peer] == boxOf[cell])) {
+                    peers[next++] = peer;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the shared geometry of the given shape with square sub-grids, created on first use
+     * @throws IllegalArgumentException if the shape is not supported
+     */
+    public static Geometry of(int rows, int columns, int subGridSize) {
+        return of(rows, columns, subGridSize, subGridSize);
+    }
+
+    /**
+     * @return the shared geometry of the given shape, created on first use
+     * @throws IllegalArgumentException if the shape is not supported
+     */
+    public static Geometry of(int rows, int columns, int boxRows, int boxColumns) {
+        return SHAPES.computeIfAbsent(Arrays.asList(rows, columns, boxRows, boxColumns),
+                shape -> new Geometry(rows, columns, boxRows, boxColumns));
+    }
+
+    /**
+     * Picks the squarest sub-grid for a board side, with no more rows than columns: 3x3 for 9, 2x3 for 6 and 3x4
+     * for 12.
+     *
+     * @return the shared geometry of a board of side {@code size}
+     * @throws IllegalArgumentException if the side is prime or too large, so that no sub-grid fits
+     */
+    public static Geometry ofSize(int size) {
+        int boxRows = (int) Math.sqrt(size);
+        while (boxRows > 1 && size % boxRows != 0) {
+            --boxRows;
+        }
+        if (size < 1 || (boxRows == 1 && size > 1)) {
+            throw new IllegalArgumentException("No sub-grid fits a board side of " + size);
+        }
+        return of(size, size, boxRows, size / boxRows);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of rows in a sub-grid, which is also the number of sub-grids across a band of rows
+     */
+    public int getBoxRows() {
+        return boxRows;
+    }
+
+    /**
+     * @return the number of columns in a sub-grid, which is also the number of sub-grids down a stack of columns
+     */
+    public int getBoxColumns() {
+        return boxColumns;
+    }
+
+    public int getCells() {
+        return cells;
+    }
+
+    /**
+     * @return bitmask with one bit set for each allowed value, bit {@code v - 1} standing for value {@code v}
+     */
+    public int fullMask() {
+        return (1 << size) - 1;
+    }
+
+    public int rowOf(int cell) {
+        return rowOf[cell];
+    }
+
+    public int columnOf(int cell) {
+        return columnOf[cell];
+    }
+
+    public int boxOf(int cell) {
+        return boxOf[cell];
+    }
+
+    public int cellAt(int rowIndex, int columnIndex) {
+        return rowIndex * size + columnIndex;
+    }
+
+    public int unitCount() {
+        return units.length;
+    }
+
+    /**
+     * @param unit index of the unit
+     * @return the cells of the unit; callers must not modify the returned array
+     */
+    public int[] unit(int unit) {
+        return units[unit];
+    }
+
+    /**
+     * @return the shape, e.g. {@code 6x6 (2x3)} for a 6x6 board with sub-grids of 2 rows by 3 columns
+     */
+    @Override
+    public String toString() {
+        return size + "x" + size + " (" + boxRows + "x" + boxColumns + ")";
+    }
+
+    /**
+     * @return the number of peers of every cell
+     */
+    public int getPeerCount() {
+        return peerCount;
+    }
+
+    /**
+     * @return the peers of all cells in ascending order, those of {@code cell} starting at
+     * {@code cell * getPeerCount()}; callers must not modify the returned array
+     */
+    public int[] peers() {
+        return peers;
+    }
+}
@@ -0,0 +1,38 @@
+package in.tamchow.sudoku;
+
+/**
+ * Difficulty of a puzzle, judged by the hardest technique a player needs to solve it.
+ */
+public enum Grade {
+    EASY,
+    MEDIUM,
+    HARD,
+    EXPERT,
+    /**
+     * Not solvable with the techniques of {@link Technique}; some guessing is required.
+     */
+    EXTREME;
+
+    /**
+     * @param hardest the hardest technique used, or null if none was needed
+     * @param solved  whether the techniques were enough to solve the puzzle
+     */
+    public static Grade of(Technique hardest, boolean solved) {
+        if (!solved) {
+            return EXTREME;
+        }
+        return hardest == null ? EASY : hardest.getGrade();
+    }
+
+    /**
+     * Maps a difficulty onto the grades in order, spaced evenly, e.g. for a generator's
+     * {@link PuzzleGenerator#setTargetGrade(Grade) target grade}.
+     *
+     * @param difficulty 0 for {@link #EASY}, 1 for {@link #EXTREME}
+     */
+    public static Grade forDifficulty(double difficulty) {
+        double clampedDifficulty = difficulty < 0.0 ? 0.0 : (difficulty > 1 ? 1.0 : difficulty);
+        Grade[] grades = values();
+        return grades[(int) Math.round(clampedDifficulty * (grades.length - 1))];
+    }
+}
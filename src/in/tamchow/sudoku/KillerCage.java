@@ -0,0 +1,78 @@
+package in.tamchow.sudoku;
+
+/**
+ * A killer cage: its cells hold different values that add up to the cage sum.
+ */
+public final class KillerCage implements Constraint {
+
+    private final int sum;
+    private final int[] cells;
+
+    public KillerCage(int sum, int... cells) {
+        if (cells.length == 0) {
+            throw new IllegalArgumentException("A cage needs at least one cell");
+        }
+        this.sum = sum;
+        this.cells = cells.clone();
+    }
+
+    public int getSum() {
+        return sum;
+    }
+
+    public int[] getCells() {
+        return cells.clone();
+    }
+
+    @Override
+    public int[][] regions(Geometry geometry) {
+        return new int[][]{cells.clone()};
+    }
+
+    @Override
+    public int[] scope(Geometry geometry) {
+        return cells.clone();
+    }
+
+    /**
+     * Keeps a value if the other empty cells of the cage can still make up the rest of the sum with distinct unused
+     * values, judged by the smallest and largest sums those values allow.
+     */
+    @Override
+    public int mask(Geometry geometry, int[] values, int cell) {
+        int used = 0, placed = 0, empty = 0;
+        for (int other : cells) {
+            if (other != cell) {
+                if (values[other] != 0) {
+                    used |= 1 << (values[other] - 1);
+                    placed += values[other];
+                } else {
+                    ++empty;
+                }
+            }
+        }
+        int size = geometry.getSize(), mask = 0;
+        for (int value = 1; value <= size; ++value) {
+            int bit = 1 << (value - 1);
+            if ((used & bit) != 0) {
+                continue;
+            }
+            int rest = sum - placed - value, available = ~(used | bit) & geometry.fullMask();
+            if (Integer.bitCount(available) < empty) {
+                continue;
+            }
+            int smallest = 0, largest = 0;
+            for (int i = 0, low = available, high = available; i < empty; ++i) {
+                int lowBit = low & -low, highBit = Integer.highestOneBit(high);
+                smallest += Integer.numberOfTrailingZeros(lowBit) + 1;
+                largest += Integer.numberOfTrailingZeros(highBit) + 1;
+                low &= ~lowBit;
+                high &= ~highBit;
+            }
+            if (rest >= smallest && rest <= largest) {
+                mask |= bit;
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,464 @@
+package in.tamchow.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Solves boards the way a player would, using only the techniques of {@link Technique} and never guessing.
+ * <p>
+ * Each empty cell carries a candidate bitmask. {@link #nextDeduction()} tries the techniques cheapest first and
+ * returns the first step that changes something, which serves both as a hint and, applied repeatedly, as a
+ * grader: a puzzle's {@link Grade} is that of the hardest technique its solve needed.
+ */
+public final class LogicalSolver {
+
+    private final Geometry geometry;
+    private final int size, peerCount;
+    private final int[] values, candidates;
+    private final int[] scratchCells, scratchMasks, scratchIndices;
+    private boolean consistent;
+
+    public LogicalSolver(Geometry geometry) {
+        this.geometry = geometry;
+        size = geometry.getSize();
+        peerCount = geometry.getPeerCount();
+        values = new int[geometry.getCells()];
+        candidates = new int[geometry.getCells()];
+        scratchCells = new int[geometry.getCells()];
+        scratchMasks = new int[geometry.getCells()];
+        scratchIndices = new int[size];
+    }
+
+    /**
+     * @param board row-major values, 0 for an empty cell
+     * @return false if the board holds out-of-range values or two equal values in one unit
+     */
+    public boolean load(int[] board) {
+        Arrays.fill(values, 0);
+        Arrays.fill(candidates, geometry.fullMask());
+        consistent = true;
+        for (int cell = 0; cell < board.length; ++cell) {
+            int value = board[cell];
+            if (value == 0) {
+                continue;
+            }
+            if (value < 0 || value > size || (candidates[cell] & (1 << (value - 1))) == 0) {
+                consistent = false;
+            } else {
+                place(cell, value);
+            }
+        }
+        return consistent;
+    }
+
+    /**
+     * Applies deductions until the board is solved or no technique applies.
+     *
+     * @return the hardest technique used, or null if none was needed
+     */
+    public Technique solve() {
+        Technique hardest = null;
+        for (Deduction deduction = nextDeduction(); deduction != null; deduction = nextDeduction()) {
+            apply(deduction);
+            if (hardest == null || deduction.getTechnique().compareTo(hardest) > 0) {
+                hardest = deduction.getTechnique();
+            }
+        }
+        return hardest;
+    }
+
+    /**
+     * Loads and solves a board.
+     *
+     * @return the grade of the hardest technique needed, {@link Grade#EXTREME} if the techniques are not enough
+     */
+    public Grade grade(int[] board) {
+        if (!load(board)) {
+            return Grade.EXTREME;
+        }
+        Technique hardest = solve();
+        return Grade.of(hardest, isSolved());
+    }
+
+    public boolean isSolved() {
+        if (!consistent) {
+            return false;
+        }
+        for (int value : values) {
+            if (value == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a copy of the current values, 0 for cells not yet deduced
+     */
+    public int[] getValues() {
+        return values.clone();
+    }
+
+    /**
+     * @return the candidate bitmask of an empty cell, or 0 for a filled one
+     */
+    public int getCandidates(int cell) {
+        return candidates[cell];
+    }
+
+    /**
+     * @return the cheapest deduction available on the current board, or null if the board is solved, contradictory
+     * or beyond the known techniques
+     */
+    public Deduction nextDeduction() {
+        if (!consistent) {
+            return null;
+        }
+        for (int cell = 0; cell < values.length; ++cell) {
+            if (values[cell] == 0 && candidates[cell] == 0) {
+                return null;
+            }
+        }
+        for (Technique technique : Technique.values()) {
+            Deduction deduction = find(technique);
+            if (deduction != null) {
+                return deduction;
+            }
+        }
+        return null;
+    }
+
+    public void apply(Deduction deduction) {
+        if (deduction.isPlacement()) {
+            place(deduction.getCell(), deduction.getValue());
+        } else {
+            int[] cells = deduction.getEliminationCells(), masks = deduction.getEliminationMasks();
+            for (int i = 0; i < cells.length; ++i) {
+                candidates[cells[i]] &= ~masks[i];
+            }
+        }
+    }
+
+    private Deduction find(Technique technique) {
+        switch (technique) {
+            case NAKED_SINGLE:
+                return nakedSingle();
+            case HIDDEN_SINGLE:
+                return hiddenSingle();
+            case POINTING:
+                return pointing();
+            case CLAIMING:
+                return claiming();
+            case NAKED_PAIR:
+                return nakedSubset(technique, 2);
+            case HIDDEN_PAIR:
+                return hiddenSubset(technique, 2);
+            case NAKED_TRIPLE:
+                return nakedSubset(technique, 3);
+            case HIDDEN_TRIPLE:
+                return hiddenSubset(technique, 3);
+            case X_WING:
+                return fish(technique, 2);
+            case SWORDFISH:
+                return fish(technique, 3);
+            default:
+                throw new AssertionError(technique);
+        }
+    }
+
+    private Deduction nakedSingle() {
+        for (int cell = 0; cell < values.length; ++cell) {
+            int mask = candidates[cell];
+            if (values[cell] == 0 && Integer.bitCount(mask) == 1) {
+                return Deduction.placement(Technique.NAKED_SINGLE, size, cell, Integer.numberOfTrailingZeros(mask) + 1);
+            }
+        }
+        return null;
+    }
+
+    private Deduction hiddenSingle() {
+        for (int unitIndex = 0; unitIndex < geometry.unitCount(); ++unitIndex) {
+            int[] unit = geometry.unit(unitIndex);
+            int once = 0, twice = 0;
+            for (int cell : unit) {
+                twice |= once & candidates[cell];
+                once |= candidates[cell];
+            }
+            int hidden = once & ~twice;
+            if (hidden != 0) {
+                int bit = hidden & -hidden;
+                for (int cell : unit) {
+                    if ((candidates[cell] & bit) != 0) {
+                        return Deduction.placement(Technique.HIDDEN_SINGLE, size, cell, Integer.numberOfTrailingZeros(bit) + 1);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A value confined to one line within a sub-grid can be removed from the rest of that line.
+     */
+    private Deduction pointing() {
+        for (int box = 0; box < size; ++box) {
+            int[] unit = geometry.unit(2 * size + box);
+            for (int value = 1; value <= size; ++value) {
+                int bit = 1 << (value - 1), row = -1, column = -1;
+                boolean sameRow = true, sameColumn = true, present = false;
+                for (int cell : unit) {
+                    if ((candidates[cell] & bit) != 0) {
+                        if (!present) {
+                            row = geometry.rowOf(cell);
+                            column = geometry.columnOf(cell);
+                            present = true;
+                        } else {
+                            sameRow &= geometry.rowOf(cell) == row;
+                            sameColumn &= geometry.columnOf(cell) == column;
+                        }
+                    }
+                }
+                if (!present) {
+                    continue;
+                }
+                if (sameRow) {
+                    Deduction deduction = eliminateOutsideBox(geometry.unit(row), box, bit);
+                    if (deduction != null) {
+                        return deduction;
+                    }
+                }
+                if (sameColumn) {
+                    Deduction deduction = eliminateOutsideBox(geometry.unit(size + column), box, bit);
+                    if (deduction != null) {
+                        return deduction;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private Deduction eliminateOutsideBox(int[] line, int box, int bit) {
+        int count = 0;
+        for (int cell : line) {
+            if (geometry.boxOf(cell) != box && (candidates[cell] & bit) != 0) {
+                scratchCells[count] = cell;
+                scratchMasks[count++] = bit;
+            }
+        }
+        return eliminations(Technique.POINTING, count);
+    }
+
+    /**
+     * A value confined to one sub-grid within a line can be removed from the rest of that sub-grid.
+     */
+    private Deduction claiming() {
+        for (int lineIndex = 0; lineIndex < 2 * size; ++lineIndex) {
+            int[] line = geometry.unit(lineIndex);
+            boolean isRow = lineIndex < size;
+            for (int value = 1; value <= size; ++value) {
+                int bit = 1 << (value - 1), box = -1;
+                boolean sameBox = true;
+                for (int cell : line) {
+                    if ((candidates[cell] & bit) != 0) {
+                        if (box < 0) {
+                            box = geometry.boxOf(cell);
+                        } else {
+                            sameBox &= geometry.boxOf(cell) == box;
+                        }
+                    }
+                }
+                if (box < 0 || !sameBox) {
+                    continue;
+                }
+                int count = 0;
+                for (int cell : geometry.unit(2 * size + box)) {
+                    int linePosition = isRow ? geometry.rowOf(cell) : size + geometry.columnOf(cell);
+                    if (linePosition != lineIndex && (candidates[cell] & bit) != 0) {
+                        scratchCells[count] = cell;
+                        scratchMasks[count++] = bit;
+                    }
+                }
+                Deduction deduction = eliminations(Technique.CLAIMING, count);
+                if (deduction != null) {
+                    return deduction;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@code k} cells of a unit whose candidates together number {@code k} claim those values for themselves.
+     */
+    private Deduction nakedSubset(Technique technique, int k) {
+        int[] masks = new int[size], cells = new int[size];
+        for (int unitIndex = 0; unitIndex < geometry.unitCount(); ++unitIndex) {
+            int[] unit = geometry.unit(unitIndex);
+            int count = 0;
+            for (int cell : unit) {
+                int bits = Integer.bitCount(candidates[cell]);
+                if (bits >= 2 && bits <= k) {
+                    masks[count] = candidates[cell];
+                    cells[count++] = cell;
+                }
+            }
+            Deduction deduction = subsets(masks, count, k, 0, 0, 0, (chosen, union) -> {
+                int eliminated = 0;
+                outer:
+                for (int cell : unit) {
+                    for (int i = 0; i < k; ++i) {
+                        if (cells[chosen[i]] == cell) {
+                            continue outer;
+                        }
+                    }
+                    if ((candidates[cell] & union) != 0) {
+                        scratchCells[eliminated] = cell;
+                        scratchMasks[eliminated++] = candidates[cell] & union;
+                    }
+                }
+                return eliminations(technique, eliminated);
+            });
+            if (deduction != null) {
+                return deduction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@code k} values of a unit confined to the same {@code k} cells leave no room there for other candidates.
+     */
+    private Deduction hiddenSubset(Technique technique, int k) {
+        int[] positions = new int[size], valueOf = new int[size];
+        for (int unitIndex = 0; unitIndex < geometry.unitCount(); ++unitIndex) {
+            int[] unit = geometry.unit(unitIndex);
+            int count = 0;
+            for (int value = 1; value <= size; ++value) {
+                int bit = 1 << (value - 1), mask = 0;
+                for (int position = 0; position < unit.length; ++position) {
+                    if ((candidates[unit[position]] & bit) != 0) {
+                        mask |= 1 << position;
+                    }
+                }
+                int bits = Integer.bitCount(mask);
+                if (bits >= 2 && bits <= k) {
+                    positions[count] = mask;
+                    valueOf[count++] = value;
+                }
+            }
+            Deduction deduction = subsets(positions, count, k, 0, 0, 0, (chosen, union) -> {
+                int keep = 0, eliminated = 0;
+                for (int i = 0; i < k; ++i) {
+                    keep |= 1 << (valueOf[chosen[i]] - 1);
+                }
+                for (int remaining = union; remaining != 0; remaining &= remaining - 1) {
+                    int cell = unit[Integer.numberOfTrailingZeros(remaining)];
+                    if ((candidates[cell] & ~keep) != 0) {
+                        scratchCells[eliminated] = cell;
+                        scratchMasks[eliminated++] = candidates[cell] & ~keep;
+                    }
+                }
+                return eliminations(technique, eliminated);
+            });
+            if (deduction != null) {
+                return deduction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * If a value's places in {@code k} base lines lie within {@code k} cross lines, the value can be removed from
+     * the rest of those cross lines. Rows and columns are tried as base lines in turn.
+     */
+    private Deduction fish(Technique technique, int k) {
+        int[] masks = new int[size], lines = new int[size];
+        for (int value = 1; value <= size; ++value) {
+            int bit = 1 << (value - 1);
+            for (int orientation = 0; orientation < 2; ++orientation) {
+                boolean rowsAreBase = orientation == 0;
+                int count = 0;
+                for (int line = 0; line < size; ++line) {
+                    int mask = 0;
+                    for (int cell : geometry.unit(rowsAreBase ? line : size + line)) {
+                        if ((candidates[cell] & bit) != 0) {
+                            mask |= 1 << (rowsAreBase ? geometry.columnOf(cell) : geometry.rowOf(cell));
+                        }
+                    }
+                    int bits = Integer.bitCount(mask);
+                    if (bits >= 2 && bits <= k) {
+                        masks[count] = mask;
+                        lines[count++] = line;
+                    }
+                }
+                Deduction deduction = subsets(masks, count, k, 0, 0, 0, (chosen, union) -> {
+                    int baseLines = 0, eliminated = 0;
+                    for (int i = 0; i < k; ++i) {
+                        baseLines |= 1 << lines[chosen[i]];
+                    }
+                    for (int remaining = union; remaining != 0; remaining &= remaining - 1) {
+                        int cross = Integer.numberOfTrailingZeros(remaining);
+                        for (int cell : geometry.unit(rowsAreBase ? size + cross : cross)) {
+                            int base = rowsAreBase ? geometry.rowOf(cell) : geometry.columnOf(cell);
+                            if ((baseLines & (1 << base)) == 0 && (candidates[cell] & bit) != 0) {
+                                scratchCells[eliminated] = cell;
+                                scratchMasks[eliminated++] = bit;
+                            }
+                        }
+                    }
+                    return eliminations(technique, eliminated);
+                });
+                if (deduction != null) {
+                    return deduction;
+                }
+            }
+        }
+        return null;
+    }
+
+    private interface SubsetAction {
+        /**
+         * @param chosen indices of the chosen masks
+         * @param union  union of the chosen masks, with exactly as many bits as masks were chosen
+         * @return the resulting deduction, or null if it changes nothing
+         */
+        Deduction apply(int[] chosen, int union);
+    }
+
+    /**
+     * Enumerates {@code k}-subsets of {@code masks[0..count)} whose union has exactly {@code k} bits, stopping at the
+     * first one the action turns into a deduction.
+     */
+    private Deduction subsets(int[] masks, int count, int k, int start, int depth, int union, SubsetAction action) {
+        if (depth == k) {
+            return Integer.bitCount(union) == k ? action.apply(scratchIndices, union) : null;
+        }
+        for (int i = start; i < count; ++i) {
+            int next = union | masks[i];
+            if (Integer.bitCount(next) > k) {
+                continue;
+            }
+            scratchIndices[depth] = i;
+            Deduction deduction = subsets(masks, count, k, i + 1, depth + 1, next, action);
+            if (deduction != null) {
+                return deduction;
+            }
+        }
+        return null;
+    }
+
+    private Deduction eliminations(Technique technique, int count) {
+        return count == 0 ? null : Deduction.elimination(technique, size,
+                Arrays.copyOf(scratchCells, count), Arrays.copyOf(scratchMasks, count));
+    }
+
+    private void place(int cell, int value) {
+        int clear = ~(1 << (value - 1));
+        values[cell] = value;
+        candidates[cell] = 0;
+        int[] peers = geometry.peers();
+        for (int i = cell * peerCount, end = i + peerCount; i < end; ++i) {
+            candidates[peers[i]] &= clear;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package in.tamchow.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Races several search strategies on the same board, one thread each, and takes the answer of whichever finishes
+ * first.
+ * <p>
+ * Backtracking times are heavy-tailed: a board that one ordering solves in a hundred nodes can take another
+ * millions. Running differently ordered searches side by side bounds the time by the luckiest of them. Once one
+ * strategy has a definite answer the others are cancelled through their {@link SearchControl} and stop within
+ * {@link SearchControl#POLL_INTERVAL} nodes. Wins are counted per strategy in {@link EngineMetrics}, so the
+ * portfolio can be trimmed to the strategies that pay off.
+ */
+public final class PortfolioSolver implements Solver {
+
+    /**
+     * A search ordering the portfolio can run.
+     */
+    public enum Strategy {
+        /**
+         * Fewest candidates first, values ascending; the default bitboard search.
+         */
+        MRV_ASCENDING,
+        MRV_DESCENDING,
+        /**
+         * Fewest candidates first, ties broken towards the end of the board.
+         */
+        MRV_REVERSE_SCAN,
+        /**
+         * Random value order, restarted with a fresh order whenever a Luby-sequence node budget runs out.
+         */
+        RANDOM_RESTARTS,
+        DANCING_LINKS
+    }
+
+    /**
+     * Node budget of the shortest random restart, per cell of the board.
+     */
+    public static final int RESTART_NODES_PER_CELL = 4;
+    private static final long WAIT_MILLIS = 10;
+
+    private static final ExecutorService RACERS = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "portfolio-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Geometry geometry;
+    private final Strategy[] strategies;
+    private final Solver[] members;
+    private final SearchControl[] controls;
+    private final int[] board;
+    private boolean consistent, aborted;
+    private int[] solution;
+    private long nodes, backtracks;
+    private Strategy winner;
+    private SearchControl control;
+
+    /**
+     * Creates a portfolio of every {@link Strategy}.
+     */
+    public PortfolioSolver(Geometry geometry) {
+        this(geometry, EnumSet.allOf(Strategy.class));
+    }
+
+    public PortfolioSolver(Geometry geometry, Set<Strategy> strategies) {
+        if (strategies.isEmpty()) {
+            throw new IllegalArgumentException("A portfolio needs at least one strategy");
+        }
+        this.geometry = geometry;
+        this.strategies = strategies.toArray(new Strategy[0]);
+        members = new Solver[this.strategies.length];
+        controls = new SearchControl[this.strategies.length];
+        board = new int[geometry.getCells()];
+        for (int i = 0; i < members.length; ++i) {
+            members[i] = create(this.strategies[i]);
+        }
+    }
+
+    private Solver create(Strategy strategy) {
+        if (strategy == Strategy.DANCING_LINKS) {
+            return new DancingLinksSolver(geometry);
+        }
+        BitboardSolver solver = new BitboardSolver(geometry);
+        solver.setDescendingValues(strategy == Strategy.MRV_DESCENDING);
+        solver.setReverseScan(strategy == Strategy.MRV_REVERSE_SCAN);
+        if (strategy == Strategy.RANDOM_RESTARTS) {
+            solver.setRandom(new Random());
+        }
+        return solver;
+    }
+
+    @Override
+    public boolean load(int[] values) {
+        if (values.length != board.length) {
+            throw new IllegalArgumentException("Expected " + board.length + " cells, got " + values.length);
+        }
+        System.arraycopy(values, 0, board, 0, board.length);
+        consistent = members[0].load(board);
+        solution = null;
+        nodes = backtracks = 0;
+        return consistent;
+    }
+
+    @Override
+    public boolean solve() {
+        return countSolutions(1) > 0;
+    }
+
+    @Override
+    public int countSolutions(int limit) {
+        solution = null;
+        aborted = false;
+        winner = null;
+        if (!consistent || limit <= 0) {
+            return 0;
+        }
+        CompletionService<Integer> race = new ExecutorCompletionService<>(RACERS);
+        List<Future<Integer>> entrants = new ArrayList<>(members.length);
+        int[] counts = new int[members.length];
+        for (int i = 0; i < members.length; ++i) {
+            int member = i;
+            members[i].load(board);
+            controls[i] = new SearchControl();
+            members[i].setControl(controls[i]);
+            entrants.add(race.submit(() -> {
+                counts[member] = run(member, limit);
+                return member;
+            }));
+        }
+        int count = 0;
+        try {
+            for (int running = members.length; running > 0 && winner == null; ) {
+                Future<Integer> finished = race.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (finished == null) {
+                    if (control != null && control.poll(progressNodes(), 0)) {
+                        aborted = true;
+                        break;
+                    }
+                    continue;
+                }
+                --running;
+                int member = finished.get();
+                if (!members[member].isAborted()) {
+                    winner = strategies[member];
+                    count = counts[member];
+                    solution = members[member].getSolution();
+                }
+            }
+            aborted |= winner == null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            aborted = true;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Portfolio strategy failed", e.getCause());
+        } finally {
+            for (SearchControl memberControl : controls) {
+                memberControl.cancel();
+            }
+            awaitAll(entrants);
+        }
+        for (Solver member : members) {
+            nodes += member.getNodes();
+            backtracks += member.getBacktracks();
+        }
+        if (winner != null) {
+            EngineMetrics.get().recordPortfolioWin(winner);
+        }
+        if (control != null) {
+            control.poll(nodes, 0);
+        }
+        return count;
+    }
+
+    /**
+     * Runs one strategy to completion, restarting the random one under a growing node budget.
+     */
+    private int run(int member, int limit) {
+        Solver solver = members[member];
+        if (strategies[member] != Strategy.RANDOM_RESTARTS) {
+            return solver.countSolutions(limit);
+        }
+        BitboardSolver restarting = (BitboardSolver) solver;
+        long unit = (long) RESTART_NODES_PER_CELL * geometry.getCells();
+        for (int run = 1; ; ++run) {
+            restarting.setNodeBudget(unit * luby(run));
+            restarting.load(board);
+            int count = restarting.countSolutions(limit);
+            if (!restarting.isAborted() || controls[member].isCancelled()) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * @return the {@code i}-th term, from 1, of the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, ...
+     */
+    static long luby(int i) {
+        for (int k = 1; ; ++k) {
+            long full = (1L << k) - 1;
+            if (i == full) {
+                return 1L << (k - 1);
+            }
+            if (i < full) {
+                return luby(i - (int) (1L << (k - 1)) + 1);
+            }
+        }
+    }
+
+    private long progressNodes() {
+        long total = 0;
+        for (SearchControl memberControl : controls) {
+            total += memberControl.getNodes();
+        }
+        return total;
+    }
+
+    private static void awaitAll(List<Future<Integer>> entrants) {
+        boolean interrupted = false;
+        for (Future<Integer> entrant : entrants) {
+            while (true) {
+                try {
+                    entrant.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int[] getSolution() {
+        return solution == null ? null : solution.clone();
+    }
+
+    /**
+     * @return the search nodes visited by all strategies together
+     */
+    @Override
+    public long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    @Override
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    @Override
+    public void setControl(SearchControl control) {
+        this.control = control;
+    }
+
+    /**
+     * @return the strategy that answered the last search, or null if none did
+     */
+    public Strategy getWinner() {
+        return winner;
+    }
+
+    /**
+     * @return the strategies raced, in the order given
+     */
+    public List<Strategy> getStrategies() {
+        return Arrays.asList(strategies.clone());
+    }
+}
@@ -0,0 +1,51 @@
+package in.tamchow.sudoku;
+
+/**
+ * An immutable generated puzzle: its givens and the unique solution they lead to.
+ */
+public final class Puzzle {
+
+    private final Geometry geometry;
+    private final int[] givens, solution;
+
+    public Puzzle(Geometry geometry, int[] givens, int[] solution) {
+        if (givens.length != geometry.getCells() || solution.length != geometry.getCells()) {
+            throw new IllegalArgumentException("Puzzle does not match a " + geometry.getSize() + "-sided board");
+        }
+        this.geometry = geometry;
+        this.givens = givens.clone();
+        this.solution = solution.clone();
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * @return a copy of the row-major givens, 0 for an empty cell
+     */
+    public int[] getGivens() {
+        return givens.clone();
+    }
+
+    public int getGiven(int cell) {
+        return givens[cell];
+    }
+
+    /**
+     * @return a copy of the row-major solution
+     */
+    public int[] getSolution() {
+        return solution.clone();
+    }
+
+    public int getClueCount() {
+        int count = 0;
+        for (int value : givens) {
+            if (value != 0) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,476 @@
+package in.tamchow.sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only corpus of puzzles written by {@link CorpusWriter}, served straight from memory-mapped files so that
+ * millions of puzzles cost no heap beyond the section table and the index directory.
+ * <p>
+ * File layout, big-endian: the magic {@code "SDKC"}, a version byte, the number of sections as a byte and the
+ * offset of the index as a long. A section table follows with, per board shape, the side and box rows as bytes and
+ * the first id, record count and data offset as longs. Each section holds fixed-width records: the {@link Grade}
+ * ordinal as a byte, the givens bitset, and the solution packed at the fewest bits that hold {@code size - 1},
+ * each cell storing its value minus one, i.e. a nibble up to 16x16.
+ * <p>
+ * The index starts with an entry count and a directory of entries, each a section and grade byte, the clue count
+ * as a short, and the start and length of a run in the id list as longs. Entries are sorted by section, grade and
+ * clue count, and the id list that follows holds the ids of each run as ints relative to their section.
+ * <p>
+ * Puzzles are read through a {@link Cursor}, which decodes cells on demand from the mapping, or copied out by id
+ * with {@link #get(long)}. Instances are safe for concurrent readers; cursors are not. Closing a corpus drops its
+ * mappings, after which the corpus and its cursors reject any use; close it only once no reader is left.
+ */
+public final class PuzzleCorpus implements Closeable {
+
+    public static final int MAGIC = 0x53444B43, VERSION = 1;
+    static final int HEADER_LENGTH = 14, SECTION_LENGTH = 26, ENTRY_LENGTH = 20;
+    /**
+     * Sections larger than this are mapped in several chunks, each holding whole records.
+     */
+    static final int CHUNK_BYTES = 1 << 30;
+    private static final Grade[] GRADES = Grade.values();
+
+    private final Path path;
+    private final Section[] sections;
+    private final Entry[] entries;
+    private final Region ids;
+    private final long size;
+    private volatile boolean closed;
+
+    private PuzzleCorpus(Path path, Section[] sections, Entry[] entries, Region ids) {
+        this.path = path;
+        this.sections = sections;
+        this.entries = entries;
+        this.ids = ids;
+        this.size = sections.length == 0 ? 0 :
+                sections[sections.length - 1].firstId + sections[sections.length - 1].count;
+    }
+
+    /**
+     * Maps a corpus file. The file itself is closed once mapped; {@link #close()} releases the mappings.
+     *
+     * @throws IOException if the file is not a corpus or is truncated
+     */
+    public static PuzzleCorpus open(Path path) throws IOException {
+        return open(path, CHUNK_BYTES);
+    }
+
+    /**
+     * @param chunkBytes most bytes mapped per chunk, which tests make small to cover chunk boundaries
+     */
+    static PuzzleCorpus open(Path path, int chunkBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 0, HEADER_LENGTH);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a puzzle corpus");
+            }
+            int version = header.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IOException("Unsupported corpus version " + version);
+            }
+            int sectionCount = header.get() & 0xFF;
+            long indexOffset = header.getLong();
+            ByteBuffer table = read(channel, HEADER_LENGTH, sectionCount * SECTION_LENGTH);
+            Section[] sections = new Section[sectionCount];
+            for (int i = 0; i < sectionCount; ++i) {
+                int side = table.get() & 0xFF, boxRows = table.get() & 0xFF;
+                long firstId = table.getLong(), count = table.getLong(), dataOffset = table.getLong();
+                Geometry geometry;
+                try {
+                    if (boxRows == 0 || side % boxRows != 0) {
+                        throw new IllegalArgumentException("Sub-grids of " + boxRows + " rows do not fit a side of " +
+                                side);
+                    }
+                    geometry = Geometry.of(side, side, boxRows, side / boxRows);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                int recordLength = recordLength(geometry);
+                sections[i] = new Section(geometry, firstId,
+                        Region.map(channel, dataOffset, count, recordLength, chunkBytes));
+            }
+            int entryCount = read(channel, indexOffset, Integer.BYTES).getInt();
+            ByteBuffer directory = read(channel, indexOffset + Integer.BYTES, entryCount * ENTRY_LENGTH);
+            Entry[] entries = new Entry[entryCount];
+            long idCount = 0;
+            for (int i = 0; i < entryCount; ++i) {
+                int section = directory.get() & 0xFF, grade = directory.get() & 0xFF;
+                if (section >= sectionCount || grade >= GRADES.length) {
+                    throw new IOException("Corrupt index entry " + i);
+                }
+                entries[i] = new Entry(section, sections[section].geometry, grade, directory.getShort() & 0xFFFF,
+                        directory.getLong(), directory.getLong());
+                idCount = Math.max(idCount, entries[i].start + entries[i].count);
+            }
+            Region ids = Region.map(channel, indexOffset + Integer.BYTES + (long) entryCount * ENTRY_LENGTH,
+                    idCount, Integer.BYTES, chunkBytes);
+            return new PuzzleCorpus(path, sections, entries, ids);
+        }
+    }
+
+    /**
+     * Reads a small fixed part of the file onto the heap.
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Corpus truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return the length of one record of the given shape
+     */
+    static int recordLength(Geometry geometry) {
+        int cells = geometry.getCells();
+        return 1 + (cells + 7) / 8 + (cells * bitsPerValue(geometry) + 7) / 8;
+    }
+
+    /**
+     * @return the bits needed for a value minus one
+     */
+    static int bitsPerValue(Geometry geometry) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(geometry.getSize() - 1));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the number of puzzles, which are numbered from 0
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the board shapes present, in id order
+     */
+    public List<Geometry> getGeometries() {
+        List<Geometry> geometries = new ArrayList<>(sections.length);
+        for (Section section : sections) {
+            geometries.add(section.geometry);
+        }
+        return Collections.unmodifiableList(geometries);
+    }
+
+    /**
+     * @return a copy of the puzzle with the given id
+     * @throws IndexOutOfBoundsException if there is no such puzzle
+     */
+    public Puzzle get(long id) {
+        Cursor cursor = new Cursor(new long[0][]);
+        cursor.moveTo(id);
+        return cursor.toPuzzle();
+    }
+
+    public Grade getGrade(long id) {
+        Cursor cursor = new Cursor(new long[0][]);
+        cursor.moveTo(id);
+        return cursor.getGrade();
+    }
+
+    /**
+     * @return a cursor over all puzzles in id order
+     */
+    public Cursor cursor() {
+        checkOpen();
+        long[][] spans = new long[sections.length][];
+        for (int i = 0; i < sections.length; ++i) {
+            spans[i] = new long[]{i, -1, 0, sections[i].count};
+        }
+        return new Cursor(spans);
+    }
+
+    /**
+     * @param geometry shape to select, or null for any
+     * @param grade    grade to select, or null for any
+     * @param minClues the fewest clues to select
+     * @param maxClues the most clues to select
+     * @return a cursor over the matching puzzles, ordered by shape, grade and clue count, found through the index
+     * without touching any record
+     */
+    public Cursor select(Geometry geometry, Grade grade, int minClues, int maxClues) {
+        checkOpen();
+        List<long[]> spans = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.matches(geometry, grade, minClues, maxClues)) {
+                spans.add(new long[]{entry.section, entry.start, 0, entry.count});
+            }
+        }
+        return new Cursor(spans.toArray(new long[0][]));
+    }
+
+    /**
+     * @return the number of puzzles {@link #select(Geometry, Grade, int, int)} would visit
+     */
+    public long count(Geometry geometry, Grade grade, int minClues, int maxClues) {
+        checkOpen();
+        long count = 0;
+        for (Entry entry : entries) {
+            if (entry.matches(geometry, grade, minClues, maxClues)) {
+                count += entry.count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Drops the mappings, which are unmapped once the garbage collector has found them unreachable, and makes every
+     * later use of the corpus or its cursors throw {@link IllegalStateException}. Closing again does nothing.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Section section : sections) {
+            section.records.release();
+        }
+        ids.release();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Corpus " + path + " is closed");
+        }
+    }
+
+    /**
+     * A position in the corpus that decodes the puzzle under it straight from the mapping. Moving to the next
+     * puzzle allocates nothing.
+     */
+    public final class Cursor {
+
+        private final long[][] spans;
+        private int span;
+        private long next;
+        private Section section;
+        private ByteBuffer chunk;
+        private int offset, maskLength;
+        private long id = -1;
+
+        /**
+         * @param spans per span the section, the start in the id list or -1 for consecutive records, the first
+         *              record and the number of records
+         */
+        private Cursor(long[][] spans) {
+            this.spans = spans;
+        }
+
+        /**
+         * @return false once every puzzle has been visited
+         */
+        public boolean next() {
+            checkOpen();
+            while (span < spans.length && next >= spans[span][3]) {
+                ++span;
+                next = 0;
+            }
+            if (span == spans.length) {
+                return false;
+            }
+            long[] current = spans[span];
+            Section selected = sections[(int) current[0]];
+            long index = current[1] < 0 ? current[2] + next : ids.getInt(current[1] + next);
+            ++next;
+            position(selected, index);
+            return true;
+        }
+
+        private void moveTo(long id) {
+            if (id < 0 || id >= size) {
+                throw new IndexOutOfBoundsException("No puzzle " + id + " in a corpus of " + size);
+            }
+            int low = 0, high = sections.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (sections[middle].firstId <= id) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            position(sections[low], id - sections[low].firstId);
+        }
+
+        private void position(Section selected, long index) {
+            checkOpen();
+            section = selected;
+            chunk = selected.records.chunk(index);
+            offset = selected.records.offset(index);
+            maskLength = (selected.geometry.getCells() + 7) / 8;
+            id = selected.firstId + index;
+        }
+
+        private void checkPositioned() {
+            checkOpen();
+            if (section == null) {
+                throw new NoSuchElementException("Cursor is not on a puzzle");
+            }
+        }
+
+        public long getId() {
+            checkPositioned();
+            return id;
+        }
+
+        public Geometry getGeometry() {
+            checkPositioned();
+            return section.geometry;
+        }
+
+        public Grade getGrade() {
+            checkPositioned();
+            int grade = chunk.get(offset) & 0xFF;
+            if (grade >= GRADES.length) {
+                throw new IllegalStateException("Corrupt grade " + grade + " in puzzle " + id);
+            }
+            return GRADES[grade];
+        }
+
+        public int getClueCount() {
+            checkPositioned();
+            int count = 0;
+            for (int i = 1; i <= maskLength; ++i) {
+                count += Integer.bitCount(chunk.get(offset + i) & 0xFF);
+            }
+            return count;
+        }
+
+        public boolean isGiven(int cell) {
+            checkPositioned();
+            return (chunk.get(offset + 1 + (cell >>> 3)) & (0x80 >>> (cell & 7))) != 0;
+        }
+
+        /**
+         * @return the given value of the cell, 0 if it is empty in the puzzle
+         */
+        public int getGiven(int cell) {
+            return isGiven(cell) ? getSolution(cell) : 0;
+        }
+
+        public int getSolution(int cell) {
+            checkPositioned();
+            int bits = section.bitsPerValue, value = 0, base = offset + 1 + maskLength;
+            for (int bit = cell * bits, end = bit + bits; bit < end; ++bit) {
+                value = (value << 1) | ((chunk.get(base + (bit >>> 3)) >>> (7 - (bit & 7))) & 1);
+            }
+            return value + 1;
+        }
+
+        /**
+         * @return a copy of the puzzle under the cursor
+         */
+        public Puzzle toPuzzle() {
+            int cells = getGeometry().getCells();
+            int[] givens = new int[cells], solution = new int[cells];
+            for (int cell = 0; cell < cells; ++cell) {
+                solution[cell] = getSolution(cell);
+                if (isGiven(cell)) {
+                    givens[cell] = solution[cell];
+                }
+            }
+            return new Puzzle(section.geometry, givens, solution);
+        }
+    }
+
+    private static final class Section {
+
+        final Geometry geometry;
+        final long firstId, count;
+        final int bitsPerValue;
+        final Region records;
+
+        Section(Geometry geometry, long firstId, Region records) {
+            this.geometry = geometry;
+            this.firstId = firstId;
+            this.count = records.count;
+            this.records = records;
+            bitsPerValue = bitsPerValue(geometry);
+        }
+    }
+
+    private static final class Entry {
+
+        final int section, grade, clues;
+        final Geometry geometry;
+        final long start, count;
+
+        Entry(int section, Geometry geometry, int grade, int clues, long start, long count) {
+            this.section = section;
+            this.geometry = geometry;
+            this.grade = grade;
+            this.clues = clues;
+            this.start = start;
+            this.count = count;
+        }
+
+        boolean matches(Geometry wantedGeometry, Grade wanted, int minClues, int maxClues) {
+            return (wantedGeometry == null || (wantedGeometry.getSize() == geometry.getSize() &&
+                    wantedGeometry.getBoxRows() == geometry.getBoxRows())) &&
+                    (wanted == null || wanted.ordinal() == grade) && clues >= minClues && clues <= maxClues;
+        }
+    }
+
+    /**
+     * Fixed-width units mapped in chunks of whole units, each no longer than the chunk size unless one unit is.
+     */
+    private static final class Region {
+
+        final ByteBuffer[] chunks;
+        final long count;
+        final int unit, perChunk;
+
+        private Region(ByteBuffer[] chunks, long count, int unit, int perChunk) {
+            this.chunks = chunks;
+            this.count = count;
+            this.unit = unit;
+            this.perChunk = perChunk;
+        }
+
+        static Region map(FileChannel channel, long position, long count, int unit, int chunkBytes)
+                throws IOException {
+            if (position + count * unit > channel.size()) {
+                throw new IOException("Corpus truncated");
+            }
+            int perChunk = Math.max(1, chunkBytes / unit);
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((count + perChunk - 1) / perChunk)];
+            for (int i = 0; i < chunks.length; ++i) {
+                long units = Math.min(perChunk, count - (long) i * perChunk);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + (long) i * perChunk * unit,
+                        units * unit);
+            }
+            return new Region(chunks, count, unit, perChunk);
+        }
+
+        ByteBuffer chunk(long index) {
+            return chunks[(int) (index / perChunk)];
+        }
+
+        int offset(long index) {
+            return (int) (index % perChunk) * unit;
+        }
+
+        int getInt(long index) {
+            return chunk(index).getInt(offset(index));
+        }
+
+        void release() {
+            Arrays.fill(chunks, null);
+        }
+    }
+}
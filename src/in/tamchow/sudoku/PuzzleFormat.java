@@ -0,0 +1,74 @@
+package in.tamchow.sudoku;
+
+/**
+ * The one-line puzzle format used by puzzle dumps: the board row-major, one character per cell, with {@code .} or
+ * {@code 0} for an empty cell, {@code 1}-{@code 9} for the first nine values and letters from {@code A} upwards
+ * for larger ones. The board shape follows from the line length, e.g. 36 characters for 6x6 with 2x3 sub-grids, 81
+ * for 9x9 and 256 for 16x16; sub-grids are as square as the side allows, see {@link Geometry#ofSize(int)}.
+ */
+public final class PuzzleFormat {
+
+    private PuzzleFormat() {
+    }
+
+    /**
+     * @return the geometry of a board with {@code length} cells
+     * @throws IllegalArgumentException if no supported board has that many cells
+     */
+    public static Geometry geometryFor(int length) {
+        int size = (int) Math.round(Math.sqrt(length));
+        if (size * size != length) {
+            throw new IllegalArgumentException("No square board has " + length + " cells");
+        }
+        return Geometry.ofSize(size);
+    }
+
+    /**
+     * @param line     a puzzle line, without its line terminator
+     * @param geometry the shape the line must describe
+     * @return the row-major values, 0 for an empty cell
+     * @throws IllegalArgumentException if the line has the wrong length or an unknown or out-of-range character
+     */
+    public static int[] parse(CharSequence line, Geometry geometry) {
+        if (line.length() != geometry.getCells()) {
+            throw new IllegalArgumentException("Expected " + geometry.getCells() + " cells, got " + line.length());
+        }
+        int[] values = new int[line.length()];
+        for (int cell = 0; cell < values.length; ++cell) {
+            int value = valueOf(line.charAt(cell));
+            if (value < 0 || value > geometry.getSize()) {
+                throw new IllegalArgumentException("Illegal character '" + line.charAt(cell) + "' at " + cell);
+            }
+            values[cell] = value;
+        }
+        return values;
+    }
+
+    public static String format(int[] values) {
+        StringBuilder accumulator = new StringBuilder(values.length);
+        for (int value : values) {
+            accumulator.append(charOf(value));
+        }
+        return accumulator.toString();
+    }
+
+    private static int valueOf(char symbol) {
+        if (symbol == '.' || symbol == '0') {
+            return 0;
+        } else if (symbol >= '1' && symbol <= '9') {
+            return symbol - '0';
+        } else if (symbol >= 'A' && symbol <= 'Z') {
+            return symbol - 'A' + 10;
+        } else if (symbol >= 'a' && symbol <= 'z') {
+            return symbol - 'a' + 10;
+        }
+        return -1;
+    }
+
+    private static char charOf(int value) {
+        if (value <= 0) {
+            return '.';
+        }
+        return value <= 9 ? (char) ('0' + value) : (char) ('A' + value - 10);
+    }
+}
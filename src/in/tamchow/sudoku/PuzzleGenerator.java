@@ -0,0 +1,206 @@
+package in.tamchow.sudoku;
+
+import java.util.Random;
+
+/**
+ * Generates puzzles with a unique solution in three steps: a randomized solve of the empty board yields a complete
+ * solution, givens are then removed in random order as long as the solution stays unique, and the removal stops at
+ * a clue count derived from the difficulty.
+ * <p>
+ * Each attempt runs in bounded time and never recurses; if no attempt within the retry budget reaches the target,
+ * the attempt that came closest is returned. Like the original generator, at most one sub-grid is left empty.
+ * <p>
+ * With a {@link #setTargetGrade(Grade) target grade}, a removal is also kept only while the puzzle grades no harder
+ * than the target, and attempts are ranked by how close their grade comes to the target instead. The clue count
+ * then acts as a floor, so an easy target still leaves as many clues as the difficulty asks for.
+ */
+public final class PuzzleGenerator {
+
+    public static final int DEFAULT_RETRY_BUDGET = 8;
+    /**
+     * Uniqueness checks that need more than this many search nodes are treated as failed, and an attempt stops
+     * removing givens once its checks have used this many nodes per cell in total. Both keep generation time
+     * bounded on large boards, at the cost of occasionally keeping a redundant clue.
+     */
+    public static final int CHECK_NODE_BUDGET = 256, ATTEMPT_NODES_PER_CELL = 16;
+
+    private final Geometry geometry;
+    private final Random random;
+    private final BitboardSolver filler;
+    private final SolutionCounter checker;
+    private final LogicalSolver grader;
+    private final int targetClues;
+    private int retryBudget = DEFAULT_RETRY_BUDGET;
+    private Grade targetGrade;
+    private Rules rules;
+
+    /**
+     * @param geometry       shape of the puzzles to generate
+     * @param difficulty     0 for the most clues, 1 for the fewest
+     * @param lowerFillLimit clue count aimed for at difficulty 1
+     * @param upperFillLimit clue count aimed for at difficulty 0
+     * @param random         source of randomness
+     */
+    public PuzzleGenerator(Geometry geometry, double difficulty, int lowerFillLimit, int upperFillLimit, Random random) {
+        this.geometry = geometry;
+        this.random = random;
+        filler = new BitboardSolver(geometry);
+        filler.setRandom(random);
+        filler.setNodeBudget((long) ATTEMPT_NODES_PER_CELL * geometry.getCells());
+        checker = new SolutionCounter(geometry);
+        checker.setNodeBudget(CHECK_NODE_BUDGET);
+        grader = new LogicalSolver(geometry);
+        targetClues = targetClues(geometry, difficulty, lowerFillLimit, upperFillLimit);
+    }
+
+    /**
+     * Maps a difficulty onto a clue count between the fill limits, clamped to the board.
+     */
+    public static int targetClues(Geometry geometry, double difficulty, int lowerFillLimit, int upperFillLimit) {
+        double clampedDifficulty = difficulty < 0.0 ? 0.0 : (difficulty > 1 ? 1.0 : difficulty);
+        int lower = Math.min(lowerFillLimit, upperFillLimit), upper = Math.max(lowerFillLimit, upperFillLimit);
+        int target = (int) Math.round(upper - clampedDifficulty * (upper - lower));
+        return Math.max(0, Math.min(geometry.getCells(), target));
+    }
+
+    public int getTargetClues() {
+        return targetClues;
+    }
+
+    public void setRetryBudget(int retryBudget) {
+        this.retryBudget = Math.max(1, retryBudget);
+    }
+
+    /**
+     * @param targetGrade grade to aim for, digging no further than the clue count, or null to aim for the clue count
+     */
+    public void setTargetGrade(Grade targetGrade) {
+        this.targetGrade = targetGrade;
+    }
+
+    public Grade getTargetGrade() {
+        return targetGrade;
+    }
+
+    /**
+     * Generates puzzles that are unique under variant rules. Grading still uses the classic techniques, which stay
+     * sound under extra rules but may rate a variant puzzle harder than it plays.
+     *
+     * @param rules variant rules for this geometry, or null for classic rules
+     */
+    public void setRules(Rules rules) {
+        this.rules = rules;
+        filler.setRules(rules);
+        checker.setRules(rules);
+    }
+
+    /**
+     * @return the puzzle closest to the target clue count, or to the target grade if one is set, among at most
+     * {@link #setRetryBudget(int) retry budget} attempts
+     * @throws IllegalStateException if no attempt produced a complete solution to dig from
+     */
+    public Puzzle generate() {
+        long start = System.nanoTime();
+        EngineMetrics metrics = EngineMetrics.get();
+        Puzzle best = null;
+        int bestDistance = Integer.MAX_VALUE, attempts = 0;
+        while (attempts < retryBudget) {
+            ++attempts;
+            Puzzle candidate = attempt();
+            if (candidate == null) {
+                metrics.recordRestart(EngineMetrics.RestartCause.FILL_ABORTED, geometry.getSize());
+                continue;
+            }
+            int distance = targetGrade == null ? 0 :
+                    targetGrade.ordinal() - grader.grade(candidate.getGivens()).ordinal();
+            if (best == null || distance < bestDistance ||
+                    (distance == bestDistance && candidate.getClueCount() < best.getClueCount())) {
+                best = candidate;
+                bestDistance = distance;
+            }
+            if (targetGrade == null ? best.getClueCount() <= targetClues : bestDistance == 0) {
+                break;
+            }
+            if (attempts < retryBudget) {
+                metrics.recordRestart(targetGrade == null ? EngineMetrics.RestartCause.CLUE_TARGET_MISSED :
+                        EngineMetrics.RestartCause.GRADE_MISSED, geometry.getSize());
+            }
+        }
+        if (best == null) {
+            throw new IllegalStateException("No solution could be generated within " + retryBudget + " attempts");
+        }
+        metrics.recordGeneration(geometry.getSize(), best.getClueCount(), attempts, System.nanoTime() - start);
+        return best;
+    }
+
+    /**
+     * @return a unique puzzle, or null if its random solution could not be completed within the node budget
+     */
+    private Puzzle attempt() {
+        int[] solution = randomSolution();
+        if (solution == null) {
+            return null;
+        }
+        int[] givens = solution.clone();
+        int cells = givens.length, clues = cells, emptyBoxes = 0;
+        long nodeBudget = (long) ATTEMPT_NODES_PER_CELL * cells;
+        int[] boxClues = new int[geometry.getSize()];
+        for (int cell = 0; cell < cells; ++cell) {
+            ++boxClues[geometry.boxOf(cell)];
+        }
+        int[] order = shuffledRange(cells);
+        for (int i = 0; i < cells && clues > targetClues && nodeBudget > 0; ++i) {
+            int cell = order[i], box = geometry.boxOf(cell);
+            if (boxClues[box] == 1 && emptyBoxes > 0) {
+                continue;
+            }
+            givens[cell] = 0;
+            boolean unique = checker.isUnique(givens);
+            nodeBudget -= checker.getNodes();
+            if (unique && (targetGrade == null || grader.grade(givens).compareTo(targetGrade) <= 0)) {
+                --clues;
+                if (--boxClues[box] == 0) {
+                    ++emptyBoxes;
+                }
+            } else {
+                givens[cell] = solution[cell];
+            }
+        }
+        return new Puzzle(geometry, givens, solution);
+    }
+
+    /**
+     * Fills the sub-grids on the main diagonal, which never constrain each other, with random permutations and
+     * completes the rest with a randomized solve. Seeding this way removes most of the heavy tail of solving an
+     * empty board on large grids. With sub-grids two cells high or wide, as on 4x4 and 6x6 boards, two seeded
+     * sub-grids often cannot be completed, so only the first is seeded there. Under variant rules a random
+     * permutation would mostly break them, so nothing is seeded.
+     */
+    private int[] randomSolution() {
+        int size = geometry.getSize(), boxRows = geometry.getBoxRows(), boxColumns = geometry.getBoxColumns();
+        int[] seed = new int[geometry.getCells()];
+        int diagonal = Math.min(boxRows, boxColumns), seededBoxes = rules != null ? 0 : diagonal > 2 ? diagonal : 1;
+        for (int box = 0; box < seededBoxes; ++box) {
+            int[] permutation = shuffledRange(size);
+            for (int i = 0; i < size; ++i) {
+                int rowIndex = box * boxRows + i / boxColumns, columnIndex = box * boxColumns + i % boxColumns;
+                seed[geometry.cellAt(rowIndex, columnIndex)] = permutation[i] + 1;
+            }
+        }
+        filler.load(seed);
+        return filler.solve() ? filler.getSolution() : null;
+    }
+
+    private int[] shuffledRange(int length) {
+        int[] order = new int[length];
+        for (int i = 0; i < length; ++i) {
+            order[i] = i;
+        }
+        for (int i = length - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1), swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,237 @@
+package in.tamchow.sudoku;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps pre-generated puzzles ready per board shape, difficulty and target {@link Grade}, so starting a game does not
+ * wait for the generator.
+ * <p>
+ * Each shelf holds up to {@code capacity} puzzles. Whenever a take leaves a shelf at or below the low watermark, a
+ * background task refills it to capacity. A take from an empty shelf is a miss: {@link #take} then generates on the
+ * calling thread, while {@link #takeAsync} waits for the first puzzle the refill generates, so a caller such as the
+ * event dispatch thread never generates itself.
+ */
+public final class PuzzlePool {
+
+    public static final int DEFAULT_CAPACITY = 8, DEFAULT_LOW_WATERMARK = 2, DEFAULT_REFILL_THREADS = 1;
+
+    private static final class SharedHolder {
+        private static final PuzzlePool INSTANCE =
+                new PuzzlePool(DEFAULT_CAPACITY, DEFAULT_LOW_WATERMARK, DEFAULT_REFILL_THREADS);
+    }
+
+    private final int capacity, lowWatermark;
+    private final ConcurrentMap<Key, Shelf> shelves = new ConcurrentHashMap<>();
+    private final ExecutorService refiller;
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+
+    public PuzzlePool(int capacity, int lowWatermark, int refillThreads) {
+        this.capacity = Math.max(1, capacity);
+        this.lowWatermark = Math.max(0, Math.min(lowWatermark, this.capacity - 1));
+        AtomicInteger threadCount = new AtomicInteger();
+        refiller = Executors.newFixedThreadPool(Math.max(1, refillThreads), runnable -> {
+            Thread thread = new Thread(runnable, "puzzle-pool-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the pool shared by all games in this JVM
+     */
+    public static PuzzlePool shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Takes a ready puzzle, or generates one on the calling thread if none is ready.
+     *
+     * @param targetGrade grade the puzzle should have, see {@link PuzzleGenerator#setTargetGrade(Grade)}, or null to
+     *                    aim for the clue count of the difficulty only
+     */
+    public Puzzle take(Geometry geometry, double difficulty, int lowerFillLimit, int upperFillLimit,
+                       Grade targetGrade) {
+        Shelf shelf = shelf(geometry, difficulty, lowerFillLimit, upperFillLimit, targetGrade);
+        Puzzle puzzle = shelf.puzzles.poll();
+        EngineMetrics.get().recordPoolTake(geometry.getSize(), puzzle != null);
+        if (puzzle != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            puzzle = shelf.newGenerator().generate();
+        }
+        if (shelf.puzzles.size() <= lowWatermark) {
+            refill(shelf);
+        }
+        return puzzle;
+    }
+
+    /**
+     * Takes a ready puzzle, or one the background refill generates next if none is ready.
+     *
+     * @return a future completed with the puzzle, already complete on a hit; it completes exceptionally if
+     * generating fails or the pool is shut down
+     */
+    public CompletableFuture<Puzzle> takeAsync(Geometry geometry, double difficulty, int lowerFillLimit,
+                                               int upperFillLimit, Grade targetGrade) {
+        Shelf shelf = shelf(geometry, difficulty, lowerFillLimit, upperFillLimit, targetGrade);
+        Puzzle puzzle = shelf.puzzles.poll();
+        EngineMetrics.get().recordPoolTake(geometry.getSize(), puzzle != null);
+        CompletableFuture<Puzzle> future;
+        if (puzzle != null) {
+            hits.increment();
+            future = CompletableFuture.completedFuture(puzzle);
+        } else {
+            misses.increment();
+            future = new CompletableFuture<>();
+            shelf.waiters.add(future);
+        }
+        if (puzzle == null || shelf.puzzles.size() <= lowWatermark) {
+            refill(shelf);
+        }
+        return future;
+    }
+
+    /**
+     * Starts filling the shelf for the given parameters in the background, e.g. while the first game is set up.
+     */
+    public void prefill(Geometry geometry, double difficulty, int lowerFillLimit, int upperFillLimit,
+                        Grade targetGrade) {
+        refill(shelf(geometry, difficulty, lowerFillLimit, upperFillLimit, targetGrade));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum(), total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return the number of puzzles ready for the given parameters
+     */
+    public int available(Geometry geometry, double difficulty, int lowerFillLimit, int upperFillLimit,
+                         Grade targetGrade) {
+        return shelf(geometry, difficulty, lowerFillLimit, upperFillLimit, targetGrade).puzzles.size();
+    }
+
+    public void shutdown() {
+        refiller.shutdownNow();
+    }
+
+    private Shelf shelf(Geometry geometry, double difficulty, int lowerFillLimit, int upperFillLimit,
+                        Grade targetGrade) {
+        Key key = new Key(geometry, difficulty, lowerFillLimit, upperFillLimit, targetGrade);
+        return shelves.computeIfAbsent(key, Shelf::new);
+    }
+
+    /**
+     * Generates in the background until the shelf is full and every waiting take has its puzzle, handing each new
+     * puzzle to the oldest waiting take first.
+     */
+    private void refill(Shelf shelf) {
+        if (!shelf.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refiller.execute(() -> {
+                boolean failed = true;
+                try {
+                    PuzzleGenerator generator = shelf.newGenerator();
+                    while ((!shelf.waiters.isEmpty() || shelf.puzzles.remainingCapacity() > 0) &&
+                            !Thread.currentThread().isInterrupted()) {
+                        Puzzle puzzle = generator.generate();
+                        CompletableFuture<Puzzle> waiter = shelf.waiters.poll();
+                        if (waiter == null || !waiter.complete(puzzle)) {
+                            shelf.puzzles.offer(puzzle);
+                        }
+                    }
+                    failed = false;
+                } catch (RuntimeException e) {
+                    fail(shelf, e);
+                } finally {
+                    shelf.refilling.set(false);
+                }
+                if (!failed && !shelf.waiters.isEmpty()) {
+                    refill(shelf);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            shelf.refilling.set(false);
+            fail(shelf, e);
+        }
+    }
+
+    private static void fail(Shelf shelf, Exception cause) {
+        CompletableFuture<Puzzle> waiter;
+        while ((waiter = shelf.waiters.poll()) != null) {
+            waiter.completeExceptionally(cause);
+        }
+    }
+
+    private final class Shelf {
+        private final Key key;
+        private final BlockingQueue<Puzzle> puzzles = new ArrayBlockingQueue<>(capacity);
+        private final Queue<CompletableFuture<Puzzle>> waiters = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean refilling = new AtomicBoolean();
+
+        Shelf(Key key) {
+            this.key = key;
+        }
+
+        PuzzleGenerator newGenerator() {
+            PuzzleGenerator generator = new PuzzleGenerator(key.geometry, key.difficulty, key.lowerFillLimit,
+                    key.upperFillLimit, new Random());
+            generator.setTargetGrade(key.targetGrade);
+            return generator;
+        }
+    }
+
+    private static final class Key {
+        private final Geometry geometry;
+        private final double difficulty;
+        private final int lowerFillLimit, upperFillLimit;
+        private final Grade targetGrade;
+
+        Key(Geometry geometry, double difficulty, int lowerFillLimit, int upperFillLimit, Grade targetGrade) {
+            this.geometry = geometry;
+            this.difficulty = difficulty;
+            this.lowerFillLimit = lowerFillLimit;
+            this.upperFillLimit = upperFillLimit;
+            this.targetGrade = targetGrade;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) other;
+            return geometry.getSize() == that.geometry.getSize() &&
+                    geometry.getBoxRows() == that.geometry.getBoxRows() &&
+                    Double.compare(difficulty, that.difficulty) == 0 &&
+                    lowerFillLimit == that.lowerFillLimit && upperFillLimit == that.upperFillLimit &&
+                    targetGrade == that.targetGrade;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 31 * geometry.getSize() + geometry.getBoxRows();
+            hash = 31 * hash + Double.hashCode(difficulty);
+            hash = 31 * (31 * hash + lowerFillLimit) + upperFillLimit;
+            return 31 * hash + (targetGrade == null ? 0 : targetGrade.ordinal() + 1);
+        }
+    }
+}
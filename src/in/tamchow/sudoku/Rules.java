@@ -0,0 +1,141 @@
+package in.tamchow.sudoku;
+
+import java.util.*;
+
+/**
+ * Variant {@link Constraint constraints} compiled for one board shape into lookup tables: per cell the extra peers
+ * its regions add beyond row, column and sub-grid, the values it may ever take, and the few constraints whose
+ * allowed values depend on the board.
+ * <p>
+ * Classic boards use no rules at all: solvers, the generator and the conflict tracker take a null rules object to
+ * mean classic rules and then skip every check made here. Instances are immutable and can be shared.
+ */
+public final class Rules {
+
+    private final Geometry geometry;
+    private final List<Constraint> constraints;
+    private final int[] peerStart, peers, staticMasks;
+    private final Constraint[][] dynamic;
+    private final int[][] affected;
+
+    public Rules(Geometry geometry, Constraint... constraints) {
+        this(geometry, Arrays.asList(constraints));
+    }
+
+    /**
+     * @throws IllegalArgumentException if a constraint names a cell outside the board
+     */
+    public Rules(Geometry geometry, List<Constraint> constraints) {
+        this.geometry = geometry;
+        this.constraints = Collections.unmodifiableList(new ArrayList<>(constraints));
+        int cells = geometry.getCells();
+        List<Set<Integer>> extraPeers = new ArrayList<>(cells), related = new ArrayList<>(cells);
+        List<List<Constraint>> dynamicOf = new ArrayList<>(cells);
+        for (int cell = 0; cell < cells; ++cell) {
+            extraPeers.add(new TreeSet<>());
+            related.add(new TreeSet<>());
+            dynamicOf.add(new ArrayList<>());
+        }
+        int[] classicPeers = geometry.peers();
+        for (Constraint constraint : this.constraints) {
+            for (int[] region : constraint.regions(geometry)) {
+                for (int cell : region) {
+                    checkCell(cell);
+                    for (int other : region) {
+                        if (other != cell && !isClassicPeer(classicPeers, cell, other)) {
+                            extraPeers.get(cell).add(other);
+                        }
+                    }
+                }
+            }
+            int[] scope = constraint.scope(geometry);
+            for (int cell : scope) {
+                checkCell(cell);
+                dynamicOf.get(cell).add(constraint);
+                for (int other : scope) {
+                    if (other != cell) {
+                        related.get(other).add(cell);
+                    }
+                }
+            }
+        }
+        peerStart = new int[cells + 1];
+        for (int cell = 0; cell < cells; ++cell) {
+            peerStart[cell + 1] = peerStart[cell] + extraPeers.get(cell).size();
+        }
+        peers = new int[peerStart[cells]];
+        staticMasks = new int[cells];
+        dynamic = new Constraint[cells][];
+        affected = new int[cells][];
+        int[] empty = new int[cells];
+        for (int cell = 0, next = 0; cell < cells; ++cell) {
+            for (int peer : extraPeers.get(cell)) {
+                peers[next++] = peer;
+            }
+            dynamic[cell] = dynamicOf.get(cell).toArray(new Constraint[0]);
+            int mask = geometry.fullMask();
+            for (Constraint constraint : dynamic[cell]) {
+                mask &= constraint.mask(geometry, empty, cell);
+            }
+            staticMasks[cell] = mask;
+            Set<Integer> touched = new TreeSet<>(extraPeers.get(cell));
+            touched.addAll(related.get(cell));
+            affected[cell] = touched.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private void checkCell(int cell) {
+        if (cell < 0 || cell >= geometry.getCells()) {
+            throw new IllegalArgumentException("Cell " + cell + " is not on a " + geometry + " board");
+        }
+    }
+
+    private boolean isClassicPeer(int[] classicPeers, int cell, int other) {
+        int count = geometry.getPeerCount();
+        return Arrays.binarySearch(classicPeers, cell * count, (cell + 1) * count, other) >= 0;
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    public List<Constraint> getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * @param values row-major values, 0 for an empty cell
+     * @return bitmask of the values the variant rules still allow in the cell, ignoring rows, columns and sub-grids
+     * and the current value of the cell
+     */
+    public int candidates(int[] values, int cell) {
+        int mask = staticMasks[cell];
+        for (int i = peerStart[cell], end = peerStart[cell + 1]; i < end; ++i) {
+            int value = values[peers[i]];
+            if (value != 0) {
+                mask &= ~(1 << (value - 1));
+            }
+        }
+        for (Constraint constraint : dynamic[cell]) {
+            mask &= constraint.mask(geometry, values, cell);
+        }
+        return mask;
+    }
+
+    /**
+     * @return whether the value of the cell breaks a variant rule given the rest of the board; an empty cell never
+     * does
+     */
+    public boolean violates(int[] values, int cell) {
+        int value = values[cell];
+        return value != 0 && (candidates(values, cell) & (1 << (value - 1))) == 0;
+    }
+
+    /**
+     * @return the cells whose {@link #candidates(int[], int)} may change when this cell does; callers must not
+     * modify the returned array
+     */
+    public int[] affected(int cell) {
+        return affected[cell];
+    }
+}
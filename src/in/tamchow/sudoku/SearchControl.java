@@ -0,0 +1,89 @@
+package in.tamchow.sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets another thread watch and stop a running search.
+ * <p>
+ * Solvers report their node count and depth every {@link #POLL_INTERVAL} nodes and stop at that point once the
+ * search has been cancelled or its deadline has passed, so control costs one branch per node.
+ */
+public final class SearchControl {
+
+    /**
+     * Number of search nodes between two polls; a power of two.
+     */
+    public static final int POLL_INTERVAL = 256;
+
+    private final long deadline;
+    private final boolean hasDeadline;
+    private volatile boolean cancelled, timedOut;
+    private volatile long nodes;
+    private volatile int depth;
+
+    /**
+     * Creates a control without a deadline.
+     */
+    public SearchControl() {
+        deadline = 0;
+        hasDeadline = false;
+    }
+
+    /**
+     * @param timeout time from now after which the search stops, 0 or less for no deadline
+     */
+    public SearchControl(long timeout, TimeUnit unit) {
+        hasDeadline = timeout > 0;
+        deadline = hasDeadline ? System.nanoTime() + unit.toNanos(timeout) : 0;
+    }
+
+    /**
+     * Asks the search to stop at its next poll.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return whether the search stopped because its deadline passed
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * @return the node count at the last poll
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the search depth at the last poll
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Publishes progress and decides whether the search goes on.
+     *
+     * @return true if the search should stop
+     */
+    boolean poll(long searchNodes, int searchDepth) {
+        nodes = searchNodes;
+        depth = searchDepth;
+        if (cancelled) {
+            return true;
+        }
+        if (hasDeadline && System.nanoTime() - deadline >= 0) {
+            timedOut = true;
+            return true;
+        }
+        return false;
+    }
+}
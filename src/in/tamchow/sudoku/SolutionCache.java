@@ -0,0 +1,129 @@
+package in.tamchow.sudoku;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers solutions by the {@link CanonicalForm} of their board, so a puzzle that is only a relabelled, permuted
+ * or transposed copy of one solved before is answered without a search.
+ * <p>
+ * At most {@code capacity} solutions are kept; beyond that the least recently used one is evicted. Solutions are
+ * stored in canonical space and mapped back through the inverse symmetry of the board asking for them. As
+ * {@link Canonicalizer} never equates two boards that are not equivalent, a lookup may miss but never returns a
+ * wrong solution.
+ */
+public final class SolutionCache {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final class SharedHolder {
+        private static final SolutionCache INSTANCE = new SolutionCache(DEFAULT_CAPACITY);
+    }
+
+    private final int capacity;
+    private final Map<CanonicalForm, int[]> solutions;
+    private final ConcurrentMap<Geometry, Canonicalizer> canonicalizers = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+    public SolutionCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        solutions = new LinkedHashMap<CanonicalForm, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CanonicalForm, int[]> eldest) {
+                if (size() <= SolutionCache.this.capacity) {
+                    return false;
+                }
+                evictions.increment();
+                EngineMetrics.get().recordCacheEviction();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return the cache shared by all games in this JVM
+     */
+    public static SolutionCache shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * @return the canonical form of a board, to be passed to {@link #get(CanonicalForm)} and
+     * {@link #put(CanonicalForm, int[])}
+     */
+    public CanonicalForm canonicalize(Geometry geometry, int[] board) {
+        return canonicalizers.computeIfAbsent(geometry, Canonicalizer::new).canonicalize(board);
+    }
+
+    /**
+     * @return the cached solution mapped onto the board the form was taken from, or null on a miss
+     */
+    public int[] get(CanonicalForm form) {
+        int[] canonical;
+        synchronized (solutions) {
+            canonical = solutions.get(form);
+        }
+        EngineMetrics.get().recordCacheLookup(canonical != null);
+        if (canonical == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return form.toOriginal(canonical);
+    }
+
+    /**
+     * @param solution a solution of the board the form was taken from
+     */
+    public void put(CanonicalForm form, int[] solution) {
+        int[] canonical = form.toCanonical(solution);
+        synchronized (solutions) {
+            solutions.put(form, canonical);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        synchronized (solutions) {
+            return solutions.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (solutions) {
+            solutions.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return hits as a fraction of all lookups, 0 if there were none
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum(), total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d solutions cached, %d hits, %d misses, %d evictions (hit rate %.1f%%)",
+                size(), capacity, getHits(), getMisses(), getEvictions(), 100 * getHitRate());
+    }
+}
@@ -0,0 +1,148 @@
+package in.tamchow.sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the solutions of a board up to a limit, which is all a uniqueness check needs.
+ * <p>
+ * On boards of side {@link #PARALLEL_MIN_SIZE} and up, the first {@link #SPLIT_DEPTH} branching cells are split
+ * into fork-join tasks, each finishing its subtree with a {@link BitboardSolver}. All tasks share one solution count,
+ * so the whole search stops as soon as the limit is reached anywhere. Smaller boards are counted sequentially,
+ * where forking costs more than it saves.
+ * <p>
+ * An instance runs one count at a time; use one instance per thread for concurrent counts.
+ */
+public final class SolutionCounter {
+
+    public static final int PARALLEL_MIN_SIZE = 16, SPLIT_DEPTH = 3;
+    /**
+     * Returned by {@link #count(int[], int)} when the node budget ran out before the limit was reached.
+     */
+    public static final int UNKNOWN = -1;
+
+    private final Geometry geometry;
+    private final ForkJoinPool pool;
+    private final BitboardSolver sequentialSolver;
+    private final LongAdder nodes = new LongAdder();
+    private long nodeBudget = Long.MAX_VALUE;
+    private Rules rules;
+
+    public SolutionCounter(Geometry geometry) {
+        this(geometry, ForkJoinPool.commonPool());
+    }
+
+    public SolutionCounter(Geometry geometry, ForkJoinPool pool) {
+        this.geometry = geometry;
+        this.pool = pool;
+        sequentialSolver = new BitboardSolver(geometry);
+    }
+
+    /**
+     * @param nodeBudget search nodes after which each subtree search gives up, making the count {@link #UNKNOWN}
+     */
+    public void setNodeBudget(long nodeBudget) {
+        this.nodeBudget = nodeBudget > 0 ? nodeBudget : Long.MAX_VALUE;
+    }
+
+    /**
+     * @param rules variant rules to count under, or null for classic rules
+     */
+    public void setRules(Rules rules) {
+        this.rules = rules;
+        sequentialSolver.setRules(rules);
+    }
+
+    /**
+     * @return the number of search nodes visited by the last count, over all tasks
+     */
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    public boolean isUnique(int[] board) {
+        return count(board, 2) == 1;
+    }
+
+    /**
+     * @param board row-major values, 0 for an empty cell
+     * @param limit the count at which to stop searching
+     * @return the number of solutions, at most {@code limit}, or {@link #UNKNOWN}
+     */
+    public int count(int[] board, int limit) {
+        nodes.reset();
+        if (limit <= 0) {
+            return 0;
+        }
+        if (geometry.getSize() < PARALLEL_MIN_SIZE) {
+            sequentialSolver.setNodeBudget(nodeBudget);
+            sequentialSolver.load(board);
+            int count = sequentialSolver.countSolutions(limit);
+            nodes.add(sequentialSolver.getNodes());
+            return sequentialSolver.isAborted() ? UNKNOWN : count;
+        }
+        AtomicInteger solutions = new AtomicInteger();
+        AtomicBoolean aborted = new AtomicBoolean();
+        pool.invoke(new CountTask(board.clone(), 0, limit, solutions, aborted));
+        int count = Math.min(solutions.get(), limit);
+        return count < limit && aborted.get() ? UNKNOWN : count;
+    }
+
+    private final class CountTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final int[] board;
+        private final int depth, limit;
+        private final AtomicInteger solutions;
+        private final AtomicBoolean aborted;
+
+        CountTask(int[] board, int depth, int limit, AtomicInteger solutions, AtomicBoolean aborted) {
+            this.board = board;
+            this.depth = depth;
+            this.limit = limit;
+            this.solutions = solutions;
+            this.aborted = aborted;
+        }
+
+        @Override
+        protected void compute() {
+            if (solutions.get() >= limit) {
+                return;
+            }
+            BitboardSolver solver = new BitboardSolver(geometry);
+            solver.setNodeBudget(nodeBudget);
+            solver.setRules(rules);
+            solver.load(board);
+            if (depth >= SPLIT_DEPTH) {
+                solver.countSolutions(limit, solutions);
+                nodes.add(solver.getNodes());
+                if (solver.isAborted() && solutions.get() < limit) {
+                    aborted.set(true);
+                }
+                return;
+            }
+            nodes.increment();
+            if (!solver.propagateLoaded()) {
+                return;
+            }
+            int cell = solver.branchCell();
+            if (cell < 0) {
+                solutions.incrementAndGet();
+                return;
+            }
+            int[] propagated = solver.currentValues();
+            List<CountTask> subtasks = new ArrayList<>(Integer.bitCount(solver.candidateMask(cell)));
+            for (int remaining = solver.candidateMask(cell); remaining != 0; remaining &= remaining - 1) {
+                int[] child = propagated.clone();
+                child[cell] = Integer.numberOfTrailingZeros(remaining) + 1;
+                subtasks.add(new CountTask(child, depth + 1, limit, solutions, aborted));
+            }
+            invokeAll(subtasks);
+        }
+    }
+}
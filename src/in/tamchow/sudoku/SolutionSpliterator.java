@@ -0,0 +1,233 @@
+package in.tamchow.sudoku;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Enumerates the solutions of a board lazily, one per {@link #tryAdvance(Consumer)}.
+ * <p>
+ * The search is the one of {@link BitboardSolver}, with singles propagated before every branch, but driven by an
+ * explicit stack of branch points instead of recursion, so it can stop after any solution and resume from there.
+ * Each step works within fixed per-level arrays, and only the solutions handed out are allocated.
+ * <p>
+ * {@link #trySplit()} hands half of the values not yet tried at the shallowest open branch point to a new
+ * spliterator, so parallel streams spread disjoint subtrees over the pool. Splits share the limit, which every
+ * solution counts against wherever it is found. Solutions come in ascending value order when enumerated
+ * sequentially; split parts are not ordered with respect to each other.
+ */
+public final class SolutionSpliterator implements Spliterator<int[]> {
+
+    private final Geometry geometry;
+    private final BitboardSolver solver;
+    private final AtomicLong remaining;
+    private final int[] nodeMarks, branchMarks, cells, untried;
+    private final int rootCell, rootMask;
+    private final Rules rules;
+    private int depth;
+    private boolean started, exhausted, pendingSolution;
+    private long estimate, nodes, backtracks, startChecks;
+
+    /**
+     * @param board row-major values, 0 for an empty cell
+     * @param limit the number of solutions after which enumeration stops, over all splits
+     */
+    public SolutionSpliterator(Geometry geometry, int[] board, long limit) {
+        this(geometry, board, limit, null);
+    }
+
+    /**
+     * @param rules variant rules for this geometry, or null for classic rules
+     */
+    public SolutionSpliterator(Geometry geometry, int[] board, long limit, Rules rules) {
+        this(geometry, board, -1, 0, new AtomicLong(limit), Long.MAX_VALUE, rules);
+    }
+
+    /**
+     * @param rootCell cell to branch on first, or -1 to select one as usual
+     * @param rootMask values to try in the root cell
+     */
+    private SolutionSpliterator(Geometry geometry, int[] board, int rootCell, int rootMask, AtomicLong remaining,
+                                long estimate, Rules rules) {
+        this.geometry = geometry;
+        this.rules = rules;
+        this.rootCell = rootCell;
+        this.rootMask = rootMask;
+        this.remaining = remaining;
+        this.estimate = estimate;
+        solver = new BitboardSolver(geometry);
+        solver.setRules(rules);
+        int levels = geometry.getCells() + 1;
+        nodeMarks = new int[levels];
+        branchMarks = new int[levels];
+        cells = new int[levels];
+        untried = new int[levels];
+        if (!solver.load(board)) {
+            exhausted = true;
+        }
+        startChecks = solver.getCandidateChecks();
+    }
+
+    /**
+     * @return a lazy stream of at most {@code limit} solutions; use {@link Stream#parallel()} to enumerate in
+     * parallel
+     */
+    public static Stream<int[]> stream(Geometry geometry, int[] board, long limit) {
+        return stream(geometry, board, limit, null);
+    }
+
+    /**
+     * @param rules variant rules for this geometry, or null for classic rules
+     */
+    public static Stream<int[]> stream(Geometry geometry, int[] board, long limit, Rules rules) {
+        return StreamSupport.stream(new SolutionSpliterator(geometry, board, limit, rules), false);
+    }
+
+    /**
+     * @return a lazy iterator over at most {@code limit} solutions
+     */
+    public static Iterator<int[]> iterator(Geometry geometry, int[] board, long limit) {
+        return Spliterators.iterator(new SolutionSpliterator(geometry, board, limit));
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super int[]> action) {
+        if (exhausted || remaining.get() <= 0) {
+            finish();
+            return false;
+        }
+        if (!started) {
+            start();
+        }
+        if (pendingSolution || findNext()) {
+            pendingSolution = false;
+            if (remaining.getAndDecrement() <= 0) {
+                finish();
+                return false;
+            }
+            int[] solution = new int[geometry.getCells()];
+            solver.copyValues(solution);
+            solver.undoTo(nodeMarks[depth]);
+            action.accept(solution);
+            return true;
+        }
+        finish();
+        return false;
+    }
+
+    /**
+     * Propagates the root and opens its branch point, or notes that the root is already solved.
+     */
+    private void start() {
+        started = true;
+        if (!expand(rootCell, rootMask)) {
+            exhausted = depth == 0 && !pendingSolution;
+        }
+    }
+
+    /**
+     * Visits a node: propagates singles and either opens a branch point on top of the stack or reports a leaf.
+     * On a solved leaf the solution stays on the board and its node mark sits at {@code depth}.
+     *
+     * @return true if a branch point was opened
+     */
+    private boolean expand(int forcedCell, int forcedMask) {
+        ++nodes;
+        nodeMarks[depth] = solver.trailMark();
+        if (!solver.propagateLoaded()) {
+            solver.undoTo(nodeMarks[depth]);
+            ++backtracks;
+            return false;
+        }
+        int cell = forcedCell >= 0 ? forcedCell : solver.branchCell();
+        if (cell < 0) {
+            pendingSolution = true;
+            return false;
+        }
+        branchMarks[depth] = solver.trailMark();
+        cells[depth] = cell;
+        untried[depth] = forcedCell >= 0 ? forcedMask : solver.candidateMask(cell);
+        ++depth;
+        return true;
+    }
+
+    /**
+     * Moves to the next solved leaf, leaving it on the board with its node mark at {@code depth}.
+     *
+     * @return false once the tree is exhausted
+     */
+    private boolean findNext() {
+        while (depth > 0) {
+            int level = depth - 1;
+            if (untried[level] == 0) {
+                solver.undoTo(nodeMarks[level]);
+                depth = level;
+                continue;
+            }
+            int bit = untried[level] & -untried[level];
+            untried[level] &= ~bit;
+            solver.undoTo(branchMarks[level]);
+            solver.assign(cells[level], Integer.numberOfTrailingZeros(bit) + 1);
+            if (!expand(-1, 0) && pendingSolution) {
+                return true;
+            }
+        }
+        exhausted = true;
+        return false;
+    }
+
+    @Override
+    public Spliterator<int[]> trySplit() {
+        if (exhausted || remaining.get() <= 0) {
+            return null;
+        }
+        if (!started) {
+            start();
+        }
+        for (int level = 0; level < depth; ++level) {
+            int count = Integer.bitCount(untried[level]);
+            if (count == 0) {
+                continue;
+            }
+            int given = 0;
+            for (int i = 0, mask = untried[level]; i < (count + 1) / 2; ++i) {
+                int highest = Integer.highestOneBit(mask);
+                given |= highest;
+                mask &= ~highest;
+            }
+            untried[level] &= ~given;
+            estimate >>>= 1;
+            return new SolutionSpliterator(geometry, solver.valuesAt(branchMarks[level]), cells[level], given,
+                    remaining, estimate, rules);
+        }
+        return null;
+    }
+
+    /**
+     * Reports the search work once, when the enumeration ends.
+     */
+    private void finish() {
+        if (started && nodes > 0) {
+            EngineMetrics.get().recordSearch(nodes, backtracks, solver.getCandidateChecks() - startChecks);
+            nodes = backtracks = 0;
+            startChecks = solver.getCandidateChecks();
+        }
+    }
+
+    /**
+     * @return a guess that halves with every split, as the real count is unknown until the search ends
+     */
+    @Override
+    public long estimateSize() {
+        return exhausted ? 0 : estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return DISTINCT | NONNULL;
+    }
+}
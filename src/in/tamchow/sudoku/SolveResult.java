@@ -0,0 +1,60 @@
+package in.tamchow.sudoku;
+
+/**
+ * Outcome of a single solve, with enough statistics to compare solver modes.
+ */
+public final class SolveResult {
+
+    private final SolverMode mode;
+    private final int[] solution;
+    private final long nodes, elapsedNanos;
+    private final boolean aborted;
+
+    public SolveResult(SolverMode mode, int[] solution, long nodes, long elapsedNanos) {
+        this(mode, solution, nodes, elapsedNanos, false);
+    }
+
+    public SolveResult(SolverMode mode, int[] solution, long nodes, long elapsedNanos, boolean aborted) {
+        this.mode = mode;
+        this.solution = solution;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+        this.aborted = aborted;
+    }
+
+    public SolverMode getMode() {
+        return mode;
+    }
+
+    public boolean isSolved() {
+        return solution != null;
+    }
+
+    /**
+     * @return the row-major solution, or null if the board has none
+     */
+    public int[] getSolution() {
+        return solution;
+    }
+
+    /**
+     * @return whether the search was stopped before it finished, so a missing solution proves nothing
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return mode + (isSolved() ? " solved" : aborted ? " stopped" : " found no solution") +
+                " in " + (elapsedNanos / 1000) + " us, " + nodes + " nodes";
+    }
+}
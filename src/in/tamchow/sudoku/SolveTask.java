@@ -0,0 +1,45 @@
+package in.tamchow.sudoku;
+
+import java.util.concurrent.FutureTask;
+
+/**
+ * A solve running in the background, see {@link AsyncSolver}. Besides the usual {@link java.util.concurrent.Future}
+ * operations it reports the progress of the search, and cancelling it stops the search at its next poll whether or
+ * not the running thread may be interrupted.
+ */
+public final class SolveTask extends FutureTask<SolveResult> {
+
+    private final SearchControl control;
+
+    SolveTask(Geometry geometry, int[] board, SolverMode mode, SearchControl control) {
+        super(() -> mode.solve(geometry, board, control));
+        this.control = control;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        control.cancel();
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    /**
+     * @return the number of search nodes visited so far, updated every {@link SearchControl#POLL_INTERVAL} nodes
+     */
+    public long getNodes() {
+        return control.getNodes();
+    }
+
+    /**
+     * @return the current search depth, updated every {@link SearchControl#POLL_INTERVAL} nodes
+     */
+    public int getDepth() {
+        return control.getDepth();
+    }
+
+    /**
+     * @return whether the search gave up because its timeout passed
+     */
+    public boolean isTimedOut() {
+        return control.isTimedOut();
+    }
+}
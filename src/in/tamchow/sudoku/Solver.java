@@ -0,0 +1,55 @@
+package in.tamchow.sudoku;
+
+/**
+ * A search engine for one board shape. Instances are reusable but not thread-safe.
+ */
+public interface Solver {
+
+    /**
+     * Loads a board, replacing any previous state.
+     *
+     * @param board row-major values, 0 for an empty cell
+     * @return false if the board holds out-of-range values or two equal values in one unit
+     */
+    boolean load(int[] board);
+
+    /**
+     * Searches for the first solution of the loaded board.
+     *
+     * @return true if a solution was found, in which case {@link #getSolution()} holds it
+     */
+    boolean solve();
+
+    /**
+     * Counts solutions of the loaded board, stopping as soon as {@code limit} of them have been seen.
+     *
+     * @param limit the count at which to stop searching
+     * @return the number of solutions found, at most {@code limit}
+     */
+    int countSolutions(int limit);
+
+    /**
+     * @return a copy of the first solution found by the last search, or null if there was none
+     */
+    int[] getSolution();
+
+    /**
+     * @return the number of search nodes visited since the last {@link #load(int[])}
+     */
+    long getNodes();
+
+    /**
+     * @return the number of dead ends backed out of since the last {@link #load(int[])}
+     */
+    long getBacktracks();
+
+    /**
+     * @return whether the last search stopped before finishing, in which case a count is only a lower bound
+     */
+    boolean isAborted();
+
+    /**
+     * @param control control polled during every following search, or null for none
+     */
+    void setControl(SearchControl control);
+}
@@ -0,0 +1,123 @@
+package in.tamchow.sudoku;
+
+/**
+ * Selects the search engine used for a board.
+ */
+public enum SolverMode {
+    /**
+     * Dancing Links from {@link #DANCING_LINKS_MIN_SIZE} upwards, where its worst case is more predictable,
+     * and the bitmask solver below it, where it is fastest.
+     */
+    AUTO,
+    BITBOARD,
+    DANCING_LINKS,
+    /**
+     * Several differently ordered searches raced on separate threads, see {@link PortfolioSolver}.
+     */
+    PORTFOLIO;
+
+    public static final int DANCING_LINKS_MIN_SIZE = 16;
+
+    public Solver create(Geometry geometry) {
+        switch (resolve(geometry)) {
+            case DANCING_LINKS:
+                return new DancingLinksSolver(geometry);
+            case PORTFOLIO:
+                return new PortfolioSolver(geometry);
+            default:
+                return new BitboardSolver(geometry);
+        }
+    }
+
+    /**
+     * Creates a solver for variant rules. Only the bitmask solver understands them, so any mode yields one when
+     * rules are given.
+     *
+     * @param rules variant rules for this geometry, or null for classic rules
+     */
+    public Solver create(Geometry geometry, Rules rules) {
+        if (rules == null) {
+            return create(geometry);
+        }
+        BitboardSolver solver = new BitboardSolver(geometry);
+        solver.setRules(rules);
+        return solver;
+    }
+
+    /**
+     * @return the concrete mode this mode stands for on the given geometry
+     */
+    public SolverMode resolve(Geometry geometry) {
+        if (this != AUTO) {
+            return this;
+        }
+        return geometry.getSize() >= DANCING_LINKS_MIN_SIZE ? DANCING_LINKS : BITBOARD;
+    }
+
+    /**
+     * Solves a board with a fresh solver of this mode, timing the search.
+     *
+     * @param geometry shape of the board
+     * @param board    row-major values, 0 for an empty cell
+     * @return the outcome, including the node count and elapsed time
+     */
+    public SolveResult solve(Geometry geometry, int[] board) {
+        return solve(geometry, board, null);
+    }
+
+    /**
+     * Solves a board with a fresh solver of this mode under a control, timing the search. Boards equivalent to one
+     * solved before are answered from the {@link SolutionCache#shared() shared solution cache}, which is asked before
+     * any solver is created.
+     *
+     * @param control control through which the search can be watched and stopped, or null for none
+     */
+    public SolveResult solve(Geometry geometry, int[] board, SearchControl control) {
+        return solve(geometry, board, control, null);
+    }
+
+    /**
+     * Solves a board under variant rules. Variant boards bypass the solution cache, whose symmetries need not
+     * preserve them, and are always searched by the bitmask solver.
+     *
+     * @param rules variant rules for this geometry, or null for classic rules
+     */
+    public SolveResult solve(Geometry geometry, int[] board, SearchControl control, Rules rules) {
+        long start = System.nanoTime();
+        SolverMode mode = rules == null ? resolve(geometry) : BITBOARD;
+        SolutionCache cache = rules == null && inRange(geometry, board) ? SolutionCache.shared() : null;
+        CanonicalForm form = cache != null ? cache.canonicalize(geometry, board) : null;
+        int[] cached = form != null ? cache.get(form) : null;
+        if (cached != null) {
+            long elapsedNanos = System.nanoTime() - start;
+            EngineMetrics.get().recordSolve(mode, geometry.getSize(), 0, true, elapsedNanos);
+            return new SolveResult(mode, cached, 0, elapsedNanos);
+        }
+        Solver solver = create(geometry, rules);
+        solver.setControl(control);
+        boolean solved = solver.load(board) && solver.solve();
+        long elapsedNanos = System.nanoTime() - start;
+        EngineMetrics.get().recordSolve(mode, geometry.getSize(), solver.getNodes(), solved, elapsedNanos);
+        if (solved && form != null) {
+            cache.put(form, solver.getSolution());
+        }
+        return new SolveResult(mode, solved ? solver.getSolution() : null,
+                solver.getNodes(), elapsedNanos, !solved && solver.isAborted());
+    }
+
+    /**
+     * @return whether the board has the geometry's cell count and only values from 0 to the board side, as the
+     * canonicalizer needs
+     */
+    private static boolean inRange(Geometry geometry, int[] board) {
+        if (board.length != geometry.getCells()) {
+            return false;
+        }
+        for (int value : board) {
+            if (value < 0 || value > geometry.getSize()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,11 +1,16 @@
 package in.tamchow.sudoku;
 
 import javax.swing.*;
+import javax.swing.Timer;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -14,7 +19,14 @@ import static javax.swing.SwingConstants.CENTER;
 
 public class Sudoku extends JFrame {
 
-    private static final String SAVE_FILE_NAME = "Sudoku.sav";
+    private static final String SAVE_FILE_NAME = "Sudoku.sav", JOURNAL_FILE_NAME = "Sudoku.journal";
+    private static final long DEFAULT_SOLVE_TIMEOUT_MILLIS = 30_000;
+    private static final int PROGRESS_INTERVAL_MILLIS = 100;
+    private static final int[] BOARD_SIZES = {4, 6, 8, 9, 12, 16};
+    /**
+     * Choices offered for the solve timeout, 0 for none.
+     */
+    private static final long[] SOLVE_TIMEOUTS_MILLIS = {5_000, DEFAULT_SOLVE_TIMEOUT_MILLIS, 120_000, 600_000, 0};
 
     public Set<Integer> getAllowedValues() {
         return allowedValues;
@@ -28,80 +40,85 @@ public class Sudoku extends JFrame {
         this.allowedValues = allowedValues;
     }
 
-    private static class Cell {
-        private final int value;
-        private final boolean fixed;
-
-        Cell(int value, boolean fixed) {
-            this.value = value;
-            this.fixed = fixed;
-        }
-    }
-
     private static final long serialVersionUID = 1L;
-    private Cell[][] board;
-    private int width, height, rows, columns, subGridSize;
+    private Game game;
+    private Geometry geometry;
+    private final GameStore store = new GameStore(Paths.get(SAVE_FILE_NAME), Paths.get(JOURNAL_FILE_NAME));
+    private boolean journaling, showConflicts = true;
+    private final BitSet illegalInputs = new BitSet();
+    private int rows, columns, boxRows;
     private Set<Integer> allowedValues;
     private double difficulty;
     private int lowerFillLimit, upperFillLimit;
-    private Color colorBackgroundA, colorBackgroundB, colorForegroundA, colorForegroundB;
-    private JTextField[][] shell;
+    private SolverMode solverMode = SolverMode.AUTO;
+    private long solveTimeoutMillis = DEFAULT_SOLVE_TIMEOUT_MILLIS;
+    private SolveTask solving;
+    private Timer solveProgress;
+    private final Color[] colors;
+    private SudokuGrid grid;
     private JLabel status;
-    private static final int SUBSQUARE_BORDER_WIDTH = 5, CELL_X = 60, CELL_Y = 60;
+    private JMenuItem[] gameItems;
+    private static final int SUBSQUARE_BORDER_WIDTH = SudokuGrid.BOX_BORDER_WIDTH;
     private static final Color BORDER_COLOR = BLACK;
 
-    private Sudoku(int rows, int columns) {
-        this(rows, columns, -1,
-                new Color[]{CYAN, YELLOW, RED, WHITE},
-                0.2);
+    public void setSolverMode(SolverMode solverMode) {
+        this.solverMode = solverMode == null ? SolverMode.AUTO : solverMode;
+    }
+
+    /**
+     * @param solveTimeoutMillis time after which Solve gives up, 0 or less to wait indefinitely
+     */
+    public void setSolveTimeout(long solveTimeoutMillis) {
+        this.solveTimeoutMillis = solveTimeoutMillis;
     }
 
-    private static int calculateSubGridSize(int rows, int columns) {
-        return (int) Math.sqrt(Math.min(rows, columns));
+    private Sudoku(int rows, int columns, SolverMode solverMode, long solveTimeoutMillis) {
+        this(rows, columns, -1,
+                new Color[]{CYAN, YELLOW, RED, WHITE},
+                0.2, solverMode, solveTimeoutMillis);
     }
 
-    private Sudoku(int rows, int columns, int subGridSize, Color[] colors, double difficulty) {
+    /**
+     * @param boxRows            rows per sub-grid, or 0 or less for the squarest sub-grid the board allows
+     * @param solverMode         engine Solve starts with, see {@link #setSolverMode(SolverMode)}
+     * @param solveTimeoutMillis timeout Solve starts with, see {@link #setSolveTimeout(long)}
+     */
+    private Sudoku(int rows, int columns, int boxRows, Color[] colors, double difficulty, SolverMode solverMode,
+                   long solveTimeoutMillis) {
         this.rows = rows > 0 ? rows : 9;
         this.columns = columns > 0 ? columns : 9;
-        int minSize = Math.min(this.rows, this.columns);
-        int defaultSubGridSize = calculateSubGridSize(this.rows, this.columns);
-        this.subGridSize = (subGridSize > 0 && subGridSize <= minSize) ? subGridSize : defaultSubGridSize;
-        width = this.rows * (CELL_X + (SUBSQUARE_BORDER_WIDTH / (this.subGridSize - 1)));
-        height = this.columns * (CELL_Y + (SUBSQUARE_BORDER_WIDTH / (this.subGridSize - 1)));
+        geometry = boxRows > 0 && this.rows % boxRows == 0 ?
+                Geometry.of(this.rows, this.columns, boxRows, this.rows / boxRows) : Geometry.ofSize(this.rows);
+        this.boxRows = geometry.getBoxRows();
         this.difficulty = difficulty < 0.0 ? 0.0 : (difficulty > 1 ? 1.0 : difficulty);
-        int maxElementValue = this.subGridSize * this.subGridSize;
+        setSolverMode(solverMode);
+        setSolveTimeout(solveTimeoutMillis);
+        int maxElementValue = geometry.getSize();
         int minElementValue = 1;
         setAllowedValues(IntStream.rangeClosed(minElementValue, maxElementValue)
                 .boxed().collect(Collectors.toCollection(LinkedHashSet::new)));
         lowerFillLimit = 2 * Math.max(rows, columns);
         upperFillLimit = (rows * columns) / 2;
 
-        colorBackgroundA = colors[0];
-        colorBackgroundB = colors[1];
-        colorForegroundA = colors[2];
-        colorForegroundB = colors[3];
-        if (minSize % this.subGridSize > 0) {
-            this.subGridSize = defaultSubGridSize;
-        }
+        this.colors = colors;
         setVisible(false);
-        shell = new JTextField[rows][columns];
-        for (int i = 0; i < shell.length; i++) {
-            for (int j = 0; j < shell[i].length; j++) {
-                shell[i][j] = new JTextField();
-            }
-        }
         initComponents();
         init();
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        EngineMetrics.register();
+        if (args.length > 0) {
+            BatchSolver.main(args);
+            return;
+        }
         final int rows = 9, columns = 9;
-        SwingUtilities.invokeLater(() -> new Sudoku(rows, columns));
+        SwingUtilities.invokeLater(() -> new Sudoku(rows, columns, SolverMode.AUTO, DEFAULT_SOLVE_TIMEOUT_MILLIS));
     }
 
     private void init() {
         setVisible(false);
-        JPanel panel = new JPanel(), superPanel = new JPanel();
+        JPanel superPanel = new JPanel(new BorderLayout());
         status = new JLabel();
         status.setHorizontalAlignment(CENTER);
         status.setAlignmentY(CENTER_ALIGNMENT);
@@ -109,295 +126,97 @@ public class Sudoku extends JFrame {
         status.setBorder(BorderFactory.createMatteBorder(
                 SUBSQUARE_BORDER_WIDTH, SUBSQUARE_BORDER_WIDTH,
                 SUBSQUARE_BORDER_WIDTH, SUBSQUARE_BORDER_WIDTH, BORDER_COLOR));
-        panel.setSize(
-                width + SUBSQUARE_BORDER_WIDTH * (subGridSize - 1),
-                height + SUBSQUARE_BORDER_WIDTH * (subGridSize - 1));
-        panel.setLayout(new GridLayout(
-                rows / subGridSize,
-                columns / subGridSize));
-        superPanel.setSize(
-                panel.getWidth(),
-                panel.getHeight() + (status.getFont().getSize() + 2 * SUBSQUARE_BORDER_WIDTH));
-        superPanel.setLayout(new BorderLayout());
-        setSize(superPanel.getWidth(), superPanel.getHeight());
         setTitle("Sudoku");
         status.setOpaque(true);
         updateStatus(WHITE, "Let's start!");
-        for (int i = 0; i < rows / subGridSize; ++i) {
-            for (int j = 0; j < columns / subGridSize; ++j) {
-                JPanel subPanel = new JPanel();
-                subPanel.setSize(width / subGridSize, height / subGridSize);
-                subPanel.setLayout(new GridLayout(subGridSize, subGridSize));
-                subPanel.setBorder(BorderFactory.createMatteBorder(SUBSQUARE_BORDER_WIDTH, SUBSQUARE_BORDER_WIDTH,
-                        SUBSQUARE_BORDER_WIDTH, SUBSQUARE_BORDER_WIDTH, BORDER_COLOR));
-                for (int k = 0; k < subGridSize; ++k) {
-                    for (int l = 0; l < subGridSize; ++l) {
-                        int rowIndex = i * (rows / subGridSize) + k, columnIndex = j * (columns / subGridSize) + l;
-                        shell[rowIndex][columnIndex] = new JTextField("", 1);
-                        subPanel.add(shell[rowIndex][columnIndex]);
-                    }
-                }
-                panel.add(subPanel);
-            }
-        }
-        superPanel.add(panel, BorderLayout.CENTER);
+        grid = new SudokuGrid(geometry, colors);
+        grid.setEditListener(this::cellEdited);
+        superPanel.add(grid, BorderLayout.CENTER);
         superPanel.add(status, BorderLayout.SOUTH);
         add(superPanel);
         initSudoku();
+        pack();
         setVisible(true);
+        grid.requestFocusInWindow();
     }
 
-    private Random random() {
-        return new Random();
-    }
-
+    /**
+     * Starts a game from the puzzle pool. If no puzzle is ready, the grid and the menu items that need a game stay
+     * disabled until the pool's background refill has generated one, so the event dispatch thread never generates.
+     */
     private void initSudoku() {
-        board = new Cell[rows][columns];
-        int fillLimit = random().nextInt((int) Math.abs(upperFillLimit * difficulty + (1 - difficulty) * lowerFillLimit)) + lowerFillLimit;
-        java.util.List<Point> allCoordinates = new ArrayList<>(rows * columns);
-        for (int y = 0; y < rows; ++y) {
-            for (int x = 0; x < columns; ++x) {
-                allCoordinates.add(new Point(x, y));
-            }
-        }
-        Collections.shuffle(allCoordinates);
-        java.util.List<Point> probableCoordinates = allCoordinates.subList(0, fillLimit);
-        for (int currentlyFilled = 0; currentlyFilled < fillLimit; ++currentlyFilled) {
-            Point probableCoordinate = probableCoordinates.get(currentlyFilled);
-            int probableRow = (int) probableCoordinate.getX(), probableColumn = (int) probableCoordinate.getY();
-            if (board[probableRow][probableColumn] == null) {
-                Set<Integer> triedValues = new HashSet<>();
-                int value = 0;
-                do {
-                    if (triedValues.containsAll(allowedValues)) {
-                        System.out.println("Recursion, invalid position.");
-                        initSudoku();
-                    } else {
-                        value = randomElement(allowedValues).orElseThrow(() -> new IllegalStateException("Set of allowed values is empty."));
-                        triedValues.add(value);
-                        System.out.println("Entering value = " + value + " at (" + probableRow + ", " + probableColumn + ").");
-                    }
-                } while (!valid(board, value, probableRow, probableColumn, true, true));
-                board[probableRow][probableColumn] = new Cell(value, true);
-            }
-        }
-        if (countEmptyGrids() > 1) {
-            System.out.println("Recursion, more than 1 empty sub-grid.");
-            initSudoku();
-        }
-        Cell[][] boardBackup = new Cell[rows][columns];
-        copy(board, boardBackup);
-        if (!solve(boardBackup, 0, 0)) {
-            System.out.println("Recursion, unsolvable board.");
-            initSudoku();
-        } else {
-            paintSudoku(true);
+        CompletableFuture<Game> starting = Game.newGameAsync(geometry, difficulty, lowerFillLimit, upperFillLimit);
+        if (starting.isDone()) {
+            gameStarted(starting.join(), null);
+            return;
         }
+        setGameEnabled(false);
+        updateStatus(YELLOW, "Generating a puzzle...");
+        starting.whenComplete((started, failure) -> SwingUtilities.invokeLater(() -> gameStarted(started, failure)));
     }
 
     /**
-     * @param set a Set in which to look for a random element
-     * @param <T> generic type of the Set elements
-     * @return a random element in the Set or null if the set is empty
+     * Shows a newly started game, unless the window was closed or a saved game was restored in the meantime.
      */
-    private <T> Optional<T> randomElement(Set<T> set) {
-        int size = set.size();
-        int itemIndex = new Random().nextInt(size);
-        int i = 0;
-        for (T element : set) {
-            if (i == itemIndex) {
-                return Optional.of(element);
-            }
-            ++i;
+    private void gameStarted(Game started, Throwable failure) {
+        if (!isDisplayable() || game != null) {
+            return;
         }
-        return Optional.empty();
-    }
-
-    private void copy(Cell[][] source, Cell[][] destination) {
-        for (int rowIndex = 0; rowIndex < source.length && rowIndex < destination.length; ++rowIndex) {
-            System.arraycopy(source[rowIndex], 0, destination[rowIndex], 0, Math.min(source[rowIndex].length, destination[rowIndex].length));
+        if (failure != null) {
+            updateStatus(RED, "Generating a puzzle failed.");
+            failure.printStackTrace();
+            return;
         }
+        game = started;
+        paintSudoku();
+        setGameEnabled(true);
+        updateStatus(WHITE, "Let's start!");
     }
 
-    private int countEmptyGrids() {
-        int count = 0;
-        for (int rowIndex = 0; rowIndex <= rows - subGridSize; rowIndex += subGridSize) {
-            for (int columnIndex = 0; columnIndex <= columns - subGridSize; columnIndex += subGridSize) {
-                int nonFree = 0;
-                for (int gridRowIndex = rowIndex; gridRowIndex < rowIndex + subGridSize; ++gridRowIndex) {
-                    for (int gridColumnIndex = columnIndex; gridColumnIndex < columnIndex + subGridSize; ++gridColumnIndex) {
-                        if (isLegal(gridRowIndex, gridColumnIndex)) {
-                            ++nonFree;
-                        }
-                    }
-                }
-                if (nonFree == 0) {
-                    ++count;
-                }
-            }
+    private void setGameEnabled(boolean enabled) {
+        grid.setEnabled(enabled);
+        for (JMenuItem item : gameItems) {
+            item.setEnabled(enabled);
         }
-        return count;
     }
 
     @Override
     public String toString() {
-        StringBuilder accumulator = new StringBuilder(3 * (rows * columns - calculateFreeCells()));
+        StringBuilder accumulator = new StringBuilder(3 * game.getFilled());
         for (int rowIndex = 0; rowIndex < rows; ++rowIndex) {
             for (int columnIndex = 0; columnIndex < columns; ++columnIndex) {
-                if (board[rowIndex][columnIndex] != null && board[rowIndex][columnIndex].value > 0) {
-                    accumulator.append(rowIndex).append(columnIndex).append(board[rowIndex][columnIndex]).append(" ");
+                int value = game.getValue(geometry.cellAt(rowIndex, columnIndex));
+                if (value > 0) {
+                    accumulator.append(rowIndex).append(columnIndex).append(value).append(" ");
                 }
             }
         }
         return accumulator.toString();
     }
 
-    private int calculateFreeCells() {
-        int count = 0;
-        for (int rowIndex = 0; rowIndex < rows; ++rowIndex) {
-            for (int columnIndex = 0; columnIndex < columns; ++columnIndex) {
-                if (!isLegal(rowIndex, columnIndex)) {
-                    ++count;
-                }
-            }
-        }
-        return count;
-    }
-
-    private void paintSudoku(boolean self) {
-        if (self) {
-            for (int rowIndex = 0; rowIndex < shell.length; rowIndex++) {
-                for (int columnIndex = 0; columnIndex < shell[rowIndex].length; columnIndex++) {
-                    if ((rowIndex * columns + columnIndex) % 2 == 0) {
-                        shell[rowIndex][columnIndex].setBackground(colorBackgroundA);
-                    } else {
-                        shell[rowIndex][columnIndex].setBackground(colorBackgroundB);
-                    }
-                    shell[rowIndex][columnIndex].setFont(shell[rowIndex][columnIndex].getFont().deriveFont(Font.BOLD, 24));
-                    shell[rowIndex][columnIndex].setHorizontalAlignment(CENTER);
-                    shell[rowIndex][columnIndex].setAlignmentX(CENTER_ALIGNMENT);
-                    if (isLegal(rowIndex, columnIndex)) {
-                        if (isFixed(rowIndex, columnIndex)) {
-                            shell[rowIndex][columnIndex].setForeground(colorForegroundA);
-                            shell[rowIndex][columnIndex].setEditable(false);
-                        } else {
-                            shell[rowIndex][columnIndex].setForeground(colorForegroundB);
-                            shell[rowIndex][columnIndex].setEditable(true);
-                        }
-                        shell[rowIndex][columnIndex].setText(String.valueOf(board[rowIndex][columnIndex].value));
-                    } else {
-                        shell[rowIndex][columnIndex].setForeground(colorForegroundB);
-                        shell[rowIndex][columnIndex].setText("");
-                        shell[rowIndex][columnIndex].setEditable(true);
-                    }
-                }
-            }
-        } else {
-            for (int rowIndex = 0; rowIndex < shell.length; rowIndex++) {
-                for (int columnIndex = 0; columnIndex < shell[rowIndex].length; columnIndex++) {
-                    if (isLegal(rowIndex, columnIndex) && shell[rowIndex][columnIndex].getText().equals("")) {
-                        shell[rowIndex][columnIndex].setText(String.valueOf(board[rowIndex][columnIndex].value));
-                        shell[rowIndex][columnIndex].setEditable(true);
-                    } else if (!isLegal(rowIndex, columnIndex)) {
-                        shell[rowIndex][columnIndex].setText("");
-                    }
-                }
-            }
-        }
-    }
-
-    private boolean isLegal(int rowIndex, int columnIndex) {
-        return isLegal(board, rowIndex, columnIndex);
-    }
-
-    private boolean isLegal(Cell[][] board, int rowIndex, int columnIndex) {
-        return board[rowIndex][columnIndex] != null && allowedValues.contains(board[rowIndex][columnIndex].value);
-    }
-
-    private boolean verifyNumbers() {
-        for (int rowIndex = 0; rowIndex < rows; ++rowIndex) {
-            for (int columnIndex = 0; columnIndex < columns; ++columnIndex) {
-                char input = shell[rowIndex][columnIndex].getText().length() == 1 ? shell[rowIndex][columnIndex].getText().charAt(0) : '\0';
-                if (Character.isDigit(input) && (!isFixed(rowIndex, columnIndex))) {
-                    board[rowIndex][columnIndex] = new Cell(input - '0', false);
-                } else if (!isFixed(rowIndex, columnIndex)) {
-                    board[rowIndex][columnIndex] = new Cell(0, false);
-                }
-                if (!isLegal(rowIndex, columnIndex)) {
-                    return false;
-                }
-            }
+    /**
+     * Shows the game in the grid, discarding any text typed that is not a value.
+     */
+    private void paintSudoku() {
+        illegalInputs.clear();
+        for (int cell = 0; cell < geometry.getCells(); ++cell) {
+            int value = game.getValue(cell);
+            grid.setCell(cell, value == 0 ? "" : String.valueOf(value), game.isFixed(cell));
+            grid.setMarked(cell, isMarked(cell));
         }
-        paintSudoku(false);
-        return true;
-    }
-
-    private boolean isFixed(int rowIndex, int columnIndex) {
-        return isFixed(board, rowIndex, columnIndex);
     }
 
-    private static boolean isFixed(Cell[][] board, int rowIndex, int columnIndex) {
-        return board[rowIndex][columnIndex] != null && board[rowIndex][columnIndex].fixed;
-    }
-
-    @SuppressWarnings("SameParameterValue")
-    private boolean valid(Cell[][] board, int rowIndex, int columnIndex, boolean zeroIsValid, boolean countIfZero) {
-        return valid(board, board[rowIndex][columnIndex] == null ? 0 : board[rowIndex][columnIndex].value, rowIndex, columnIndex, zeroIsValid, countIfZero);
-    }
-
-    @SuppressWarnings("ConstantConditions")
-    private boolean valid(Cell[][] board, int value, int rowIndex, int columnIndex, boolean zeroIsValid, boolean countIfZero) {
-        if (zeroIsValid && value <= 0) return true;
-        int step = subGridSize - 1, gridRowStart, gridRowEnd, gridColumnStart = 0, gridColumnEnd = step;
-        outer:
-        for (gridRowStart = 0, gridRowEnd = step;
-             (gridRowStart < (rows - step)) && (gridRowEnd < rows);
-             gridRowStart += subGridSize, gridRowEnd += subGridSize) {
-            for (gridColumnStart = 0, gridColumnEnd = step;
-                 (gridColumnStart < (columns - step)) && (gridColumnEnd < columns);
-                 gridColumnStart += subGridSize, gridColumnEnd += subGridSize) {
-                if (rowIndex >= gridRowStart && rowIndex <= gridRowEnd &&
-                        columnIndex >= gridColumnStart && columnIndex <= gridColumnEnd) {
-                    break outer;
-                }
-            }
-        }
-        int rowCount = 0, columnCount = 0, groupCount = 0;
-        for (Cell[] row : board) {
-            if (row[columnIndex] != null && row[columnIndex].value == value) {
-                ++rowCount;
-            }
-        }
-        for (int column = 0; column < columns; ++column) {
-            if (board[rowIndex][column] != null && board[rowIndex][column].value == value) {
-                ++columnCount;
-            }
-        }
-        for (int i = gridRowStart; i <= gridRowEnd; ++i) {
-            for (int j = gridColumnStart; j <= gridColumnEnd; ++j) {
-                if (board[i][j] != null && board[i][j].value == value) {
-                    ++groupCount;
-                }
-            }
-        }
-        return (countIfZero) ?
-                rowCount == 0 && columnCount == 0 && groupCount == 0 :
-                rowCount == 1 && columnCount == 1 && groupCount == 1;
+    private boolean isMarked(int cell) {
+        return showConflicts && (game.isConflicting(cell) || illegalInputs.get(cell));
     }
 
     private boolean checkBoardValidity(String message, boolean autoSolved) {
-        if (verifyNumbers()) {
-            int validCount = 0;
-            for (int rowIndex = 0; rowIndex < rows; ++rowIndex) {
-                for (int columnIndex = 0; columnIndex < columns; ++columnIndex) {
-                    if (valid(board, rowIndex, columnIndex, false, false)) {
-                        ++validCount;
-                    } else if (board[rowIndex][columnIndex] != null && board[rowIndex][columnIndex].value != 0) {
-                        shell[rowIndex][columnIndex].setBackground(DARK_GRAY);
-                    }
-                }
-            }
-            boolean allValid = validCount == (rows * columns);
+        if (!showConflicts) {
+            showConflicts = true;
+            paintSudoku();
+        }
+        if (illegalInputs.isEmpty() && game.getFilled() == geometry.getCells()) {
+            boolean allValid = game.isSolved();
             if (allValid) {
                 updateStatus(GREEN, autoSolved ? message : "Congratulations! You have completed the game!");
             } else {
@@ -417,8 +236,8 @@ public class Sudoku extends JFrame {
 
     private void save() {
         try {
-            ObjectOutputStream outputStream = new ObjectOutputStream(new FileOutputStream(SAVE_FILE_NAME));
-            outputStream.writeObject(this);
+            store.save(game.getBoard());
+            journaling = true;
             updateStatus(YELLOW, "The game was saved.");
         } catch (IOException e) {
             updateStatus(RED, "Saving game failed.");
@@ -428,20 +247,63 @@ public class Sudoku extends JFrame {
 
     private void restore() {
         try {
-            ObjectInputStream inputStream = new ObjectInputStream(new FileInputStream(SAVE_FILE_NAME));
-            Sudoku save = (Sudoku) inputStream.readObject();
-            for (int i = 0; i < this.board.length; i++)
-                System.arraycopy(save.board[i], 0, this.board[i], 0, this.board[i].length);
-            for (int i = 0; i < this.shell.length; i++)
-                System.arraycopy(save.shell[i], 0, this.shell[i], 0, this.shell[i].length);
-            paintSudoku(false);
+            Board saved = store.restore();
+            if (saved.getGeometry().getSize() != rows || saved.getGeometry().getBoxRows() != boxRows) {
+                store.close();
+                throw new IOException("Saved game is " + saved.getGeometry() + ", not " + geometry);
+            }
+            game = Game.of(saved);
+            illegalInputs.clear();
+            paintSudoku();
+            setGameEnabled(true);
+            journaling = true;
             updateStatus(YELLOW, "The game was Restored.");
-        } catch (ClassNotFoundException | IOException e) {
+        } catch (IOException e) {
+            journaling = false;
             updateStatus(RED, "Restoring game failed.");
             e.printStackTrace();
         }
     }
 
+    /**
+     * Keeps the game in step with every edit of a cell, and appends the edit to the journal once the game has been
+     * saved or restored.
+     */
+    private void cellEdited(String text, int cell) {
+        int value = parseValue(text);
+        illegalInputs.set(cell, value == 0 && !text.trim().isEmpty());
+        game.set(cell, value, this::repaintMarking);
+        if (journaling) {
+            journal(cell);
+        }
+    }
+
+    private void repaintMarking(int cell) {
+        grid.setMarked(cell, isMarked(cell));
+    }
+
+    private void journal(int cell) {
+        try {
+            store.record(game.getBoard(), cell);
+        } catch (IOException e) {
+            journaling = false;
+            updateStatus(RED, "Autosave failed.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the value typed into a cell, or 0 if it is empty or not an allowed value
+     */
+    private int parseValue(String text) {
+        try {
+            int value = Integer.parseInt(text.trim());
+            return allowedValues.contains(value) ? value : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     private void initComponents() {
         JMenuBar menuBar = new JMenuBar();
         menuBar.setSize(menuBar.getWidth(), Math.round(getHeight() * .1f));
@@ -459,29 +321,80 @@ public class Sudoku extends JFrame {
         reload.setFont(reload.getFont().deriveFont(14.0f));
         JMenuItem clearHints = new JMenuItem();
         clearHints.setFont(clearHints.getFont().deriveFont(14.0f));
+        JMenuItem hint = new JMenuItem();
+        hint.setFont(hint.getFont().deriveFont(14.0f));
         JMenuItem exit = new JMenuItem();
         exit.setFont(exit.getFont().deriveFont(14.0f));
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         menu.setText("Options");
         newGame.setText("New Game");
         final ActionListener disposer = event -> {
+            cancelSolve();
             setVisible(false);
+            try {
+                store.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
             dispose();
         };
         newGame.addActionListener(event -> {
             disposer.actionPerformed(event);
-            new Sudoku(rows, columns);
+            new Sudoku(rows, columns, solverMode, solveTimeoutMillis);
         });
         newGame.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F5, 0));
         menu.add(newGame);
+        JMenu boardSize = new JMenu("Board Size");
+        boardSize.setFont(boardSize.getFont().deriveFont(14.0f));
+        for (int size : BOARD_SIZES) {
+            Geometry shape = Geometry.ofSize(size);
+            JRadioButtonMenuItem sizeItem = new JRadioButtonMenuItem(shape.toString(), size == rows);
+            sizeItem.setFont(sizeItem.getFont().deriveFont(14.0f));
+            sizeItem.addActionListener(event -> {
+                disposer.actionPerformed(event);
+                new Sudoku(size, size, solverMode, solveTimeoutMillis);
+            });
+            boardSize.add(sizeItem);
+        }
+        menu.add(boardSize);
         clearHints.setText("Clear Hints");
-        clearHints.addActionListener(event -> paintSudoku(true));
+        clearHints.addActionListener(event -> {
+            showConflicts = false;
+            paintSudoku();
+        });
         clearHints.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F2, 0));
         menu.add(clearHints);
         solve.setText("Solve");
         solve.addActionListener(event -> solve());
         solve.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F1, 0));
         menu.add(solve);
+        JMenu solver = new JMenu("Solver");
+        solver.setFont(solver.getFont().deriveFont(14.0f));
+        ButtonGroup solverModes = new ButtonGroup();
+        for (SolverMode mode : SolverMode.values()) {
+            JRadioButtonMenuItem modeItem = new JRadioButtonMenuItem(displayName(mode), mode == solverMode);
+            modeItem.setFont(modeItem.getFont().deriveFont(14.0f));
+            modeItem.addActionListener(event -> setSolverMode(mode));
+            solverModes.add(modeItem);
+            solver.add(modeItem);
+        }
+        menu.add(solver);
+        JMenu solveTimeout = new JMenu("Solve Timeout");
+        solveTimeout.setFont(solveTimeout.getFont().deriveFont(14.0f));
+        ButtonGroup solveTimeouts = new ButtonGroup();
+        for (long timeoutMillis : SOLVE_TIMEOUTS_MILLIS) {
+            JRadioButtonMenuItem timeoutItem = new JRadioButtonMenuItem(displayName(timeoutMillis),
+                    timeoutMillis == solveTimeoutMillis || (timeoutMillis <= 0 && solveTimeoutMillis <= 0));
+            timeoutItem.setFont(timeoutItem.getFont().deriveFont(14.0f));
+            timeoutItem.addActionListener(event -> setSolveTimeout(timeoutMillis));
+            solveTimeouts.add(timeoutItem);
+            solveTimeout.add(timeoutItem);
+        }
+        menu.add(solveTimeout);
+        hint.setText("Hint");
+        hint.addActionListener(event -> hint());
+        hint.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F4, 0));
+        menu.add(hint);
         done.setText("Done");
         done.addActionListener(event -> checkBoardValidity("", false));
         done.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0));
@@ -501,40 +414,106 @@ public class Sudoku extends JFrame {
         });
         exit.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0));
         menu.add(exit);
+        gameItems = new JMenuItem[]{clearHints, solve, hint, done, save};
         menuBar.add(menu);
         setJMenuBar(menuBar);
         pack();
     }
 
-    private boolean solve() {
-        //printGrid();
-        boolean solutionExists = solve(board, 0, 0);
-        if (solutionExists) {
-            paintSudoku(true);
+    private static String displayName(SolverMode mode) {
+        String name = mode.name().replace('_', ' ');
+        return name.charAt(0) + name.substring(1).toLowerCase(Locale.ROOT);
+    }
+
+    private static String displayName(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            return "None";
+        }
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(timeoutMillis);
+        return seconds % 60 == 0 ? seconds / 60 + " min" : seconds + " s";
+    }
+
+    /**
+     * Starts solving the board in the background, or cancels the solve already running. Progress is shown in the
+     * status label, and the solution is applied on the event dispatch thread once the search finishes, provided
+     * the board has not been edited in the meantime.
+     */
+    private void solve() {
+        if (solving != null) {
+            cancelSolve();
+            updateStatus(ORANGE, "Solving cancelled.");
+            return;
+        }
+        int[] submitted = game.getValues();
+        SolveTask task = AsyncSolver.shared().submit(geometry, submitted, solverMode,
+                solveTimeoutMillis, TimeUnit.MILLISECONDS);
+        solving = task;
+        solveProgress = new Timer(PROGRESS_INTERVAL_MILLIS, event -> solveProgressed(task, submitted));
+        solveProgress.setInitialDelay(0);
+        solveProgress.start();
+    }
+
+    private void solveProgressed(SolveTask task, int[] submitted) {
+        if (task != solving) {
+            return;
+        }
+        if (!task.isDone()) {
+            updateStatus(YELLOW, String.format("Solving... %,d nodes, depth %d (F1 to cancel)",
+                    task.getNodes(), task.getDepth()));
+            return;
+        }
+        stopSolveProgress();
+        solving = null;
+        SolveResult result;
+        try {
+            result = task.get();
+        } catch (InterruptedException | ExecutionException e) {
+            updateStatus(RED, "Solving failed.");
+            e.printStackTrace();
+            return;
+        }
+        if (result.isAborted()) {
+            updateStatus(ORANGE, task.isTimedOut() ?
+                    "Gave up after " + TimeUnit.NANOSECONDS.toSeconds(result.getElapsedNanos()) + " s." :
+                    "Solving cancelled.");
+        } else if (!Arrays.equals(submitted, game.getValues())) {
+            updateStatus(ORANGE, "The grid changed while solving; solve again.");
+        } else if (game.applySolution(result, null)) {
+            paintSudoku();
             checkBoardValidity("Solved", true);
         } else {
             updateStatus(RED, "No solution");
         }
-        return solutionExists;
     }
 
-    private boolean solve(Cell[][] board, int i, int j) {
-        if (i == rows - 1 && j == columns) {
-            return true;
-        } else if (j == columns) {
-            j = 0;
-            i += 1;
+    private void cancelSolve() {
+        if (solving != null) {
+            solving.cancel(false);
+            solving = null;
         }
-        if (board[i][j] != null && (board[i][j].fixed || board[i][j].value > 0)) return solve(board, i, j + 1);
-        for (int trialValue : allowedValues) {
-            if (valid(board, trialValue, i, j, false, true)) {
-                board[i][j] = new Cell(trialValue, false);
-                if (solve(board, i, j + 1))
-                    return true;
-            } else {
-                board[i][j] = new Cell(0, false);
-            }
+        stopSolveProgress();
+    }
+
+    private void stopSolveProgress() {
+        if (solveProgress != null) {
+            solveProgress.stop();
+            solveProgress = null;
+        }
+    }
+
+    /**
+     * Shows the next logical step for the board as currently shown, naming the technique it takes.
+     */
+    private void hint() {
+        if (!illegalInputs.isEmpty() || game.getConflicts() > 0 || game.isSolved()) {
+            checkBoardValidity("", false);
+            return;
+        }
+        Deduction deduction = game.hint();
+        if (deduction == null) {
+            updateStatus(ORANGE, "No hint: the next step needs guessing or an earlier entry is wrong.");
+        } else {
+            updateStatus(YELLOW, deduction.toString());
         }
-        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,338 @@
+package in.tamchow.sudoku;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+import static java.awt.Color.*;
+
+/**
+ * The board as a single component painting all of its cells, in place of a text field per cell.
+ * <p>
+ * Each cell has the text shown in it, which is what was typed while it is being edited, and flags for being fixed
+ * and being marked, e.g. as a conflict. Changing a cell repaints only its rectangle, and painting skips the cells
+ * outside the clip. The font is derived once per grid and the glyphs of each text are laid out once, so painting a
+ * cell comes down to a fill and a glyph draw.
+ * <p>
+ * The grid takes keyboard input itself: arrow keys move the selection, typed characters are appended to the text of
+ * the selected cell, Backspace removes the last one and Delete clears the cell. Fixed cells cannot be edited, and
+ * every other edit goes to the edit listener. {@link #render()} paints the grid into an image without a screen, so
+ * it also works headless.
+ */
+public final class SudokuGrid extends JComponent {
+
+    public static final int CELL_SIZE = 60, BOX_BORDER_WIDTH = 5, CELL_BORDER_WIDTH = 1;
+    private static final long serialVersionUID = 1L;
+    private static final float FONT_SCALE = 0.4f;
+    private static final int MAX_TEXT_LENGTH = 4, MAX_GLYPHS = 256, SELECTION_WIDTH = 3;
+    private static final Color BORDER_COLOR = BLACK, MARKED_BACKGROUND = DARK_GRAY, SELECTION_COLOR = BLUE;
+
+    private final Geometry geometry;
+    private final String[] texts;
+    private final BitSet fixed = new BitSet(), marked = new BitSet();
+    private final int[] columnOffsets, rowOffsets;
+    private final Color backgroundA, backgroundB, foregroundFixed, foregroundFree;
+    private final Font font;
+    private final transient Map<String, Glyph> glyphs = new HashMap<>();
+    private transient FontRenderContext glyphContext;
+    private transient ObjIntConsumer<String> editListener;
+    private int selected = -1;
+
+    /**
+     * @param colors the two alternating cell backgrounds, then the text colours of fixed and of other cells
+     */
+    public SudokuGrid(Geometry geometry, Color[] colors) {
+        this.geometry = geometry;
+        backgroundA = colors[0];
+        backgroundB = colors[1];
+        foregroundFixed = colors[2];
+        foregroundFree = colors[3];
+        texts = new String[geometry.getCells()];
+        Arrays.fill(texts, "");
+        columnOffsets = offsets(geometry.getSize(), geometry.getBoxColumns());
+        rowOffsets = offsets(geometry.getSize(), geometry.getBoxRows());
+        Font base = UIManager.getFont("TextField.font");
+        font = (base != null ? base : new Font(Font.DIALOG, Font.PLAIN, 12)).deriveFont(Font.BOLD,
+                CELL_SIZE * FONT_SCALE);
+        setPreferredSize(new Dimension(columnOffsets[columnOffsets.length - 1] + CELL_SIZE + BOX_BORDER_WIDTH,
+                rowOffsets[rowOffsets.length - 1] + CELL_SIZE + BOX_BORDER_WIDTH));
+        setOpaque(true);
+        setFocusable(true);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent event) {
+                int cell = cellAt(event.getX(), event.getY());
+                if (cell >= 0) {
+                    select(cell);
+                }
+                requestFocusInWindow();
+            }
+        });
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent event) {
+                pressed(event);
+            }
+
+            @Override
+            public void keyTyped(KeyEvent event) {
+                char typed = event.getKeyChar();
+                if (selected >= 0 && typed != KeyEvent.CHAR_UNDEFINED && !Character.isISOControl(typed) &&
+                        texts[selected].length() < MAX_TEXT_LENGTH) {
+                    edit(texts[selected] + typed);
+                    event.consume();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the offset of every line of cells along one side, leaving a box border before each box and a cell
+     * border between the cells of a box
+     */
+    private static int[] offsets(int lines, int boxWidth) {
+        int[] offsets = new int[lines];
+        for (int line = 0; line < lines; ++line) {
+            offsets[line] = BOX_BORDER_WIDTH * (line / boxWidth + 1) + CELL_BORDER_WIDTH * (line - line / boxWidth) +
+                    line * CELL_SIZE;
+        }
+        return offsets;
+    }
+
+    /**
+     * @param editListener receives the new text and the cell on every edit of a cell that is not fixed, or null
+     */
+    public void setEditListener(ObjIntConsumer<String> editListener) {
+        this.editListener = editListener;
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    public String getText(int cell) {
+        return texts[cell];
+    }
+
+    public boolean isFixed(int cell) {
+        return fixed.get(cell);
+    }
+
+    public boolean isMarked(int cell) {
+        return marked.get(cell);
+    }
+
+    /**
+     * @return the selected cell, or -1 if there is none
+     */
+    public int getSelected() {
+        return selected;
+    }
+
+    /**
+     * Shows a text in a cell without reporting an edit, repainting the cell if anything changed.
+     */
+    public void setCell(int cell, String text, boolean fixed) {
+        if (texts[cell].equals(text) && this.fixed.get(cell) == fixed) {
+            return;
+        }
+        texts[cell] = text;
+        this.fixed.set(cell, fixed);
+        repaintCell(cell);
+    }
+
+    public void setMarked(int cell, boolean marked) {
+        if (this.marked.get(cell) != marked) {
+            this.marked.set(cell, marked);
+            repaintCell(cell);
+        }
+    }
+
+    /**
+     * @param cell the cell to select, or -1 to clear the selection
+     */
+    public void select(int cell) {
+        if (cell == selected) {
+            return;
+        }
+        if (selected >= 0) {
+            repaintCell(selected);
+        }
+        selected = cell;
+        if (cell >= 0) {
+            repaintCell(cell);
+        }
+    }
+
+    private void pressed(KeyEvent event) {
+        int keyCode = event.getKeyCode();
+        if (keyCode == KeyEvent.VK_BACK_SPACE || keyCode == KeyEvent.VK_DELETE) {
+            if (selected >= 0 && !texts[selected].isEmpty()) {
+                String text = texts[selected];
+                edit(keyCode == KeyEvent.VK_DELETE ? "" : text.substring(0, text.length() - 1));
+            }
+            event.consume();
+            return;
+        }
+        int rowStep = keyCode == KeyEvent.VK_UP ? -1 : keyCode == KeyEvent.VK_DOWN ? 1 : 0,
+                columnStep = keyCode == KeyEvent.VK_LEFT ? -1 : keyCode == KeyEvent.VK_RIGHT ? 1 : 0;
+        if (rowStep == 0 && columnStep == 0) {
+            return;
+        }
+        event.consume();
+        if (selected < 0) {
+            select(0);
+            return;
+        }
+        int last = geometry.getSize() - 1;
+        select(geometry.cellAt(Math.max(0, Math.min(last, geometry.rowOf(selected) + rowStep)),
+                Math.max(0, Math.min(last, geometry.columnOf(selected) + columnStep))));
+    }
+
+    private void edit(String text) {
+        int cell = selected;
+        if (fixed.get(cell)) {
+            return;
+        }
+        texts[cell] = text;
+        repaintCell(cell);
+        if (editListener != null) {
+            editListener.accept(text, cell);
+        }
+    }
+
+    private void repaintCell(int cell) {
+        repaint(cellBounds(cell));
+    }
+
+    /**
+     * @return the area of the cell, in the coordinates of the grid
+     */
+    public Rectangle cellBounds(int cell) {
+        return new Rectangle(columnOffsets[geometry.columnOf(cell)], rowOffsets[geometry.rowOf(cell)],
+                CELL_SIZE, CELL_SIZE);
+    }
+
+    /**
+     * @return the cell at a point, or -1 if the point is on a border or outside the grid
+     */
+    public int cellAt(int x, int y) {
+        int columnIndex = lineAt(columnOffsets, x), rowIndex = lineAt(rowOffsets, y);
+        return columnIndex < 0 || rowIndex < 0 ? -1 : geometry.cellAt(rowIndex, columnIndex);
+    }
+
+    private static int lineAt(int[] offsets, int position) {
+        int line = Arrays.binarySearch(offsets, position);
+        if (line < 0) {
+            line = -line - 2;
+        }
+        return line >= 0 && position < offsets[line] + CELL_SIZE ? line : -1;
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        render((Graphics2D) graphics);
+    }
+
+    /**
+     * Paints the cells within the clip of the graphics, or the whole grid if it has no clip.
+     */
+    public void render(Graphics2D graphics) {
+        Rectangle clip = graphics.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(getPreferredSize());
+        }
+        graphics.setColor(BORDER_COLOR);
+        graphics.fillRect(clip.x, clip.y, clip.width, clip.height);
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        FontRenderContext context = graphics.getFontRenderContext();
+        for (int rowIndex = 0; rowIndex < rowOffsets.length; ++rowIndex) {
+            int y = rowOffsets[rowIndex];
+            if (y >= clip.y + clip.height || y + CELL_SIZE <= clip.y) {
+                continue;
+            }
+            for (int columnIndex = 0; columnIndex < columnOffsets.length; ++columnIndex) {
+                int x = columnOffsets[columnIndex];
+                if (x < clip.x + clip.width && x + CELL_SIZE > clip.x) {
+                    paintCell(graphics, context, geometry.cellAt(rowIndex, columnIndex), x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a new image of the whole grid
+     */
+    public BufferedImage render() {
+        Dimension size = getPreferredSize();
+        BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            render(graphics);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private void paintCell(Graphics2D graphics, FontRenderContext context, int cell, int x, int y) {
+        graphics.setColor(marked.get(cell) ? MARKED_BACKGROUND : cell % 2 == 0 ? backgroundA : backgroundB);
+        graphics.fillRect(x, y, CELL_SIZE, CELL_SIZE);
+        if (cell == selected) {
+            graphics.setColor(SELECTION_COLOR);
+            for (int i = 0; i < SELECTION_WIDTH; ++i) {
+                graphics.drawRect(x + i, y + i, CELL_SIZE - 1 - 2 * i, CELL_SIZE - 1 - 2 * i);
+            }
+        }
+        String text = texts[cell];
+        if (!text.isEmpty()) {
+            Glyph glyph = glyph(text, context);
+            graphics.setColor(fixed.get(cell) ? foregroundFixed : foregroundFree);
+            graphics.drawGlyphVector(glyph.vector, x + glyph.x, y + glyph.y);
+        }
+    }
+
+    /**
+     * @return the laid out glyphs of a text, from the cache unless the rendering context changed
+     */
+    private Glyph glyph(String text, FontRenderContext context) {
+        if (!context.equals(glyphContext) || glyphs.size() >= MAX_GLYPHS) {
+            glyphs.clear();
+            glyphContext = context;
+        }
+        Glyph glyph = glyphs.get(text);
+        if (glyph == null) {
+            glyph = new Glyph(font.createGlyphVector(context, text));
+            glyphs.put(text, glyph);
+        }
+        return glyph;
+    }
+
+    /**
+     * Glyphs of a text with the offset that centres them in a cell.
+     */
+    private static final class Glyph {
+
+        final GlyphVector vector;
+        final float x, y;
+
+        Glyph(GlyphVector vector) {
+            this.vector = vector;
+            Rectangle2D bounds = vector.getVisualBounds();
+            x = (float) ((CELL_SIZE - bounds.getWidth()) / 2 - bounds.getX());
+            y = (float) ((CELL_SIZE - bounds.getHeight()) / 2 - bounds.getY());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package in.tamchow.sudoku;
+
+/**
+ * Solving techniques known to {@link LogicalSolver}, in the order it tries them, cheapest first.
+ */
+public enum Technique {
+    NAKED_SINGLE("Naked single", Grade.EASY),
+    HIDDEN_SINGLE("Hidden single", Grade.EASY),
+    POINTING("Pointing", Grade.MEDIUM),
+    CLAIMING("Claiming", Grade.MEDIUM),
+    NAKED_PAIR("Naked pair", Grade.MEDIUM),
+    HIDDEN_PAIR("Hidden pair", Grade.MEDIUM),
+    NAKED_TRIPLE("Naked triple", Grade.HARD),
+    HIDDEN_TRIPLE("Hidden triple", Grade.HARD),
+    X_WING("X-Wing", Grade.EXPERT),
+    SWORDFISH("Swordfish", Grade.EXPERT);
+
+    private final String displayName;
+    private final Grade grade;
+
+    Technique(String displayName, Grade grade) {
+        this.displayName = displayName;
+        this.grade = grade;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public Grade getGrade() {
+        return grade;
+    }
+}
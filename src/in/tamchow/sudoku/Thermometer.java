@@ -0,0 +1,57 @@
+package in.tamchow.sudoku;
+
+/**
+ * A thermometer: values strictly increase from the bulb along the given cells.
+ */
+public final class Thermometer implements Constraint {
+
+    private final int[] cells;
+
+    /**
+     * @param cells the cells from the bulb to the tip
+     */
+    public Thermometer(int... cells) {
+        if (cells.length == 0) {
+            throw new IllegalArgumentException("A thermometer needs at least one cell");
+        }
+        this.cells = cells.clone();
+    }
+
+    public int[] getCells() {
+        return cells.clone();
+    }
+
+    @Override
+    public int[][] regions(Geometry geometry) {
+        return new int[][]{cells.clone()};
+    }
+
+    @Override
+    public int[] scope(Geometry geometry) {
+        return cells.clone();
+    }
+
+    /**
+     * Bounds a value by the values placed before and after it, leaving room for one step per cell in between.
+     */
+    @Override
+    public int mask(Geometry geometry, int[] values, int cell) {
+        int position = 0;
+        while (cells[position] != cell) {
+            ++position;
+        }
+        int lower = position + 1, upper = geometry.getSize() - (cells.length - 1 - position);
+        for (int i = 0; i < cells.length; ++i) {
+            int value = values[cells[i]];
+            if (value == 0 || i == position) {
+                continue;
+            }
+            if (i < position) {
+                lower = Math.max(lower, value + position - i);
+            } else {
+                upper = Math.min(upper, value - (i - position));
+            }
+        }
+        return lower > upper ? 0 : (geometry.fullMask() >>> (geometry.getSize() - upper)) & ~((1 << (lower - 1)) - 1);
+    }
+}
@@ -0,0 +1,200 @@
+package in.tamchow.sudoku;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GameStoreTest {
+
+    private static final int RECORD_LENGTH = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void snapshotRoundTripsEverySupportedWidth() throws IOException {
+        for (Geometry geometry : new Geometry[]{Geometry.ofSize(4), Geometry.of(6, 6, 2, 3), Geometry.ofSize(9),
+                Geometry.ofSize(16), Geometry.ofSize(25)}) {
+            Board board = randomBoard(geometry, new Random(geometry.getSize()));
+            Board decoded = GameStore.decode(GameStore.encode(board));
+            assertEquals(geometry.toString(), board, decoded);
+            assertEquals(geometry.getBoxRows(), decoded.getGeometry().getBoxRows());
+        }
+    }
+
+    @Test
+    public void snapshotPacksNineByNineIntoNibbles() {
+        // Header, 81 nibbles, the fixed-cell bitset and the checksum
+        assertEquals(8 + 41 + 11 + 4, GameStore.encode(new Board(Geometry.ofSize(9))).length);
+    }
+
+    @Test
+    public void corruptSnapshotFailsItsChecksum() {
+        byte[] snapshot = GameStore.encode(randomBoard(Geometry.ofSize(9), new Random(1)));
+        snapshot[20] ^= 0x10;
+        assertDecodeFails(snapshot, "checksum");
+    }
+
+    @Test
+    public void truncatedOrForeignSnapshotIsRejected() {
+        byte[] snapshot = GameStore.encode(randomBoard(Geometry.ofSize(9), new Random(2)));
+        assertDecodeFails(Arrays.copyOf(snapshot, snapshot.length - 1), "does not match");
+        assertDecodeFails(new byte[8], "truncated");
+        snapshot[0] = 'X';
+        assertDecodeFails(snapshot, "Not a saved game");
+        snapshot[0] = 'S';
+        snapshot[4] = GameStore.VERSION + 1;
+        assertDecodeFails(snapshot, "version");
+    }
+
+    @Test
+    public void journalReplaysMovesOverTheSnapshot() throws IOException {
+        Board board = randomBoard(Geometry.ofSize(9), new Random(3));
+        try (GameStore store = store()) {
+            store.save(board);
+            play(store, board, 40, new Random(4));
+        }
+        assertEquals(40L * RECORD_LENGTH, Files.size(journal()));
+        try (GameStore store = store()) {
+            assertEquals(board, store.restore());
+            play(store, board, 10, new Random(5));
+        }
+        try (GameStore store = store()) {
+            assertEquals(board, store.restore());
+        }
+    }
+
+    @Test
+    public void tornFinalRecordIsDroppedAndJournalingContinues() throws IOException {
+        Board board = randomBoard(Geometry.ofSize(16), new Random(6));
+        try (GameStore store = store()) {
+            store.save(board);
+            play(store, board, 12, new Random(7));
+        }
+        Board beforeTear = board.copy();
+        try (OutputStream output = Files.newOutputStream(journal(), StandardOpenOption.APPEND)) {
+            output.write(new byte[]{0, 1});
+        }
+        try (GameStore store = store()) {
+            assertEquals(beforeTear, store.restore());
+            assertEquals(12L * RECORD_LENGTH, Files.size(journal()));
+            play(store, board, 5, new Random(8));
+        }
+        try (GameStore store = store()) {
+            assertEquals(board, store.restore());
+        }
+    }
+
+    @Test
+    public void journalMovingAFixedCellIsRejected() throws IOException {
+        Board board = randomBoard(Geometry.ofSize(9), new Random(9));
+        int fixedCell = 0;
+        while (!board.isFixed(fixedCell)) {
+            ++fixedCell;
+        }
+        try (GameStore store = store()) {
+            store.save(board);
+        }
+        Files.write(journal(), new byte[]{0, (byte) fixedCell, 1});
+        try (GameStore store = store()) {
+            store.restore();
+            fail("Journal over a fixed cell restored");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("record 0"));
+        }
+    }
+
+    @Test
+    public void journalIsCompactedIntoTheSnapshotAfterTheThreshold() throws IOException {
+        Board board = randomBoard(Geometry.ofSize(9), new Random(10));
+        try (GameStore store = store()) {
+            store.save(board);
+            play(store, board, GameStore.COMPACTION_THRESHOLD, new Random(11));
+            assertEquals((long) GameStore.COMPACTION_THRESHOLD * RECORD_LENGTH, Files.size(journal()));
+            play(store, board, 1, new Random(12));
+            assertEquals(0L, Files.size(journal()));
+            assertEquals(board, GameStore.decode(Files.readAllBytes(snapshot())));
+            play(store, board, 3, new Random(13));
+        }
+        assertEquals(3L * RECORD_LENGTH, Files.size(journal()));
+        try (GameStore store = store()) {
+            assertEquals(board, store.restore());
+        }
+    }
+
+    @Test
+    public void fullJournalLeftByACrashIsCompactedOnRestore() throws IOException {
+        Board board = randomBoard(Geometry.ofSize(9), new Random(14));
+        try (GameStore store = store()) {
+            store.save(board);
+            play(store, board, GameStore.COMPACTION_THRESHOLD, new Random(15));
+        }
+        try (GameStore store = store()) {
+            assertEquals(board, store.restore());
+            assertEquals(0L, Files.size(journal()));
+            assertEquals(board, GameStore.decode(Files.readAllBytes(snapshot())));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void recordingBeforeSavingFails() throws IOException {
+        try (GameStore store = store()) {
+            store.record(new Board(Geometry.ofSize(4)), 0);
+        }
+    }
+
+    private GameStore store() {
+        return new GameStore(snapshot(), journal());
+    }
+
+    private Path snapshot() {
+        return folder.getRoot().toPath().resolve("game.sdk");
+    }
+
+    private Path journal() {
+        return folder.getRoot().toPath().resolve("game.journal");
+    }
+
+    /**
+     * Makes random moves on free cells, journaling each one, including clearing moves.
+     */
+    private static void play(GameStore store, Board board, int moves, Random random) throws IOException {
+        int cells = board.getGeometry().getCells(), size = board.getGeometry().getSize();
+        for (int move = 0; move < moves; ) {
+            int cell = random.nextInt(cells);
+            if (!board.isFixed(cell)) {
+                board.setValue(cell, random.nextInt(size + 1));
+                store.record(board, cell);
+                ++move;
+            }
+        }
+    }
+
+    private static Board randomBoard(Geometry geometry, Random random) {
+        Board board = new Board(geometry);
+        for (int cell = 0; cell < geometry.getCells(); ++cell) {
+            int value = random.nextInt(geometry.getSize() + 1);
+            board.setCell(cell, value, value != 0 && random.nextBoolean());
+        }
+        return board;
+    }
+
+    private static void assertDecodeFails(byte[] snapshot, String reason) {
+        try {
+            GameStore.decode(snapshot);
+            fail("Decoded an invalid snapshot");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(reason));
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package in.tamchow.sudoku;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PuzzleCorpusTest {
+
+    /**
+     * Small enough that every section and the id list span several chunks, and a multiple of none of the record
+     * lengths, so records end short of chunk boundaries.
+     */
+    private static final int CHUNK_BYTES = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsRoundTripByIdAcrossChunks() throws IOException {
+        List<Stored> stored = write();
+        try (PuzzleCorpus corpus = PuzzleCorpus.open(corpusPath(), CHUNK_BYTES)) {
+            assertEquals(stored.size(), corpus.size());
+            assertEquals(Arrays.asList(Geometry.ofSize(9), Geometry.ofSize(4), Geometry.ofSize(16)),
+                    corpus.getGeometries());
+            for (int id = 0; id < stored.size(); ++id) {
+                assertPuzzle(stored.get(id), corpus.get(id));
+                assertEquals(stored.get(id).grade, corpus.getGrade(id));
+            }
+        }
+    }
+
+    @Test
+    public void recordsAroundEveryChunkBoundaryDecode() throws IOException {
+        List<Stored> stored = write();
+        try (PuzzleCorpus corpus = PuzzleCorpus.open(corpusPath(), CHUNK_BYTES)) {
+            long firstId = 0;
+            for (Geometry geometry : corpus.getGeometries()) {
+                int perChunk = CHUNK_BYTES / PuzzleCorpus.recordLength(geometry);
+                long count = stored.stream().filter(puzzle -> puzzle.puzzle.getGeometry() == geometry).count();
+                assertTrue(geometry + " fits one chunk", count > perChunk);
+                for (long index = perChunk; index < count; index += perChunk) {
+                    for (long id = firstId + index - 1; id <= firstId + index; ++id) {
+                        assertPuzzle(stored.get((int) id), corpus.get(id));
+                    }
+                }
+                firstId += count;
+            }
+        }
+    }
+
+    @Test
+    public void cursorStreamsEveryRecordInIdOrder() throws IOException {
+        List<Stored> stored = write();
+        try (PuzzleCorpus corpus = PuzzleCorpus.open(corpusPath(), CHUNK_BYTES)) {
+            PuzzleCorpus.Cursor cursor = corpus.cursor();
+            for (int id = 0; id < stored.size(); ++id) {
+                assertTrue(cursor.next());
+                assertEquals(id, cursor.getId());
+                assertEquals(stored.get(id).grade, cursor.getGrade());
+                assertEquals(stored.get(id).puzzle.getClueCount(), cursor.getClueCount());
+                assertPuzzle(stored.get(id), cursor.toPuzzle());
+            }
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    public void selectionStreamsMatchingRecordsThroughTheIndex() throws IOException {
+        List<Stored> stored = write();
+        try (PuzzleCorpus corpus = PuzzleCorpus.open(corpusPath(), CHUNK_BYTES)) {
+            for (Geometry geometry : corpus.getGeometries()) {
+                int cells = geometry.getCells();
+                assertSelection(stored, corpus, geometry, null, 0, cells);
+                assertSelection(stored, corpus, geometry, Grade.MEDIUM, 0, cells);
+                assertSelection(stored, corpus, geometry, null, cells / 4, cells / 2);
+                assertSelection(stored, corpus, geometry, Grade.EXTREME, cells / 3, cells);
+            }
+            assertSelection(stored, corpus, null, Grade.HARD, 0, Integer.MAX_VALUE);
+            assertSelection(stored, corpus, null, null, 0, Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void chunksSmallerThanARecordHoldOneRecordEach() throws IOException {
+        List<Stored> stored = write();
+        try (PuzzleCorpus corpus = PuzzleCorpus.open(corpusPath(), 16)) {
+            for (int id = 0; id < stored.size(); ++id) {
+                assertPuzzle(stored.get(id), corpus.get(id));
+            }
+            assertSelection(stored, corpus, null, Grade.EASY, 0, Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void defaultChunkingReadsTheSameCorpus() throws IOException {
+        List<Stored> stored = write();
+        try (PuzzleCorpus corpus = PuzzleCorpus.open(corpusPath())) {
+            for (int id = 0; id < stored.size(); ++id) {
+                assertPuzzle(stored.get(id), corpus.get(id));
+            }
+        }
+    }
+
+    @Test
+    public void closedCorpusRejectsUse() throws IOException {
+        write();
+        PuzzleCorpus corpus = PuzzleCorpus.open(corpusPath(), CHUNK_BYTES);
+        PuzzleCorpus.Cursor cursor = corpus.cursor();
+        assertTrue(cursor.next());
+        corpus.close();
+        corpus.close();
+        try {
+            cursor.getSolution(0);
+            fail("Read through a closed corpus");
+        } catch (IllegalStateException expected) {
+            // The mappings are gone
+        }
+        try {
+            corpus.get(0);
+            fail("Read through a closed corpus");
+        } catch (IllegalStateException expected) {
+            // The mappings are gone
+        }
+    }
+
+    @Test
+    public void foreignOrTruncatedFilesAreRejected() throws IOException {
+        write();
+        byte[] bytes = Files.readAllBytes(corpusPath());
+        Path truncated = folder.getRoot().toPath().resolve("truncated.sdkc");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+        assertOpenFails(truncated, "truncated");
+        bytes[0] = 'X';
+        Path foreign = folder.getRoot().toPath().resolve("foreign.sdkc");
+        Files.write(foreign, bytes);
+        assertOpenFails(foreign, "Not a puzzle corpus");
+    }
+
+    /**
+     * Writes puzzles of three shapes, interleaved, with random givens and grades.
+     *
+     * @return the puzzles in the order of the ids the corpus gives them
+     */
+    private List<Stored> write() throws IOException {
+        Random random = new Random(1);
+        Map<Geometry, List<Stored>> byShape = new LinkedHashMap<>();
+        Map<Geometry, Integer> counts = new LinkedHashMap<>();
+        counts.put(Geometry.ofSize(9), 120);
+        counts.put(Geometry.ofSize(4), 300);
+        counts.put(Geometry.ofSize(16), 40);
+        Map<Geometry, int[]> solutions = new HashMap<>();
+        for (Geometry geometry : counts.keySet()) {
+            byShape.put(geometry, new ArrayList<>());
+            int cells = geometry.getCells();
+            solutions.put(geometry, new PuzzleGenerator(geometry, 0, cells, cells, random).generate().getSolution());
+        }
+        try (CorpusWriter writer = new CorpusWriter(corpusPath())) {
+            boolean added = true;
+            while (added) {
+                added = false;
+                for (Map.Entry<Geometry, Integer> count : counts.entrySet()) {
+                    List<Stored> shape = byShape.get(count.getKey());
+                    if (shape.size() < count.getValue()) {
+                        Stored puzzle = randomPuzzle(count.getKey(), solutions.get(count.getKey()), random);
+                        assertEquals(shape.size(), writer.add(puzzle.puzzle, puzzle.grade));
+                        shape.add(puzzle);
+                        added = true;
+                    }
+                }
+            }
+        }
+        List<Stored> stored = new ArrayList<>();
+        byShape.values().forEach(stored::addAll);
+        return stored;
+    }
+
+    /**
+     * @return a relabelled copy of the solution with random givens and a random grade
+     */
+    private static Stored randomPuzzle(Geometry geometry, int[] solution, Random random) {
+        int size = geometry.getSize();
+        int[] labels = new int[size + 1], relabelled = new int[solution.length], givens = new int[solution.length];
+        List<Integer> digits = new ArrayList<>();
+        for (int digit = 1; digit <= size; ++digit) {
+            digits.add(digit);
+        }
+        Collections.shuffle(digits, random);
+        for (int digit = 1; digit <= size; ++digit) {
+            labels[digit] = digits.get(digit - 1);
+        }
+        double density = random.nextDouble();
+        for (int cell = 0; cell < solution.length; ++cell) {
+            relabelled[cell] = labels[solution[cell]];
+            givens[cell] = random.nextDouble() < density ? relabelled[cell] : 0;
+        }
+        Grade[] grades = Grade.values();
+        return new Stored(new Puzzle(geometry, givens, relabelled), grades[random.nextInt(grades.length)]);
+    }
+
+    /**
+     * Checks that a selection visits exactly the matching puzzles, ordered by shape, grade and clue count.
+     */
+    private static void assertSelection(List<Stored> stored, PuzzleCorpus corpus, Geometry geometry, Grade grade,
+                                        int minClues, int maxClues) {
+        Set<Long> expected = new HashSet<>();
+        for (int id = 0; id < stored.size(); ++id) {
+            Stored puzzle = stored.get(id);
+            int clues = puzzle.puzzle.getClueCount();
+            if ((geometry == null || puzzle.puzzle.getGeometry() == geometry) &&
+                    (grade == null || puzzle.grade == grade) && clues >= minClues && clues <= maxClues) {
+                expected.add((long) id);
+            }
+        }
+        Set<Long> visited = new HashSet<>();
+        PuzzleCorpus.Cursor cursor = corpus.select(geometry, grade, minClues, maxClues);
+        long previousKey = -1;
+        while (cursor.next()) {
+            Stored puzzle = stored.get((int) cursor.getId());
+            assertTrue("Visited " + cursor.getId() + " twice", visited.add(cursor.getId()));
+            assertPuzzle(puzzle, cursor.toPuzzle());
+            long key = ((long) corpus.getGeometries().indexOf(cursor.getGeometry()) << 32) |
+                    ((long) cursor.getGrade().ordinal() << 16) | cursor.getClueCount();
+            assertTrue("Selection out of order at " + cursor.getId(), key >= previousKey);
+            previousKey = key;
+        }
+        assertEquals(expected, visited);
+        assertEquals(expected.size(), corpus.count(geometry, grade, minClues, maxClues));
+    }
+
+    private static void assertPuzzle(Stored expected, Puzzle actual) {
+        assertEquals(expected.puzzle.getGeometry(), actual.getGeometry());
+        assertArrayEquals(expected.puzzle.getGivens(), actual.getGivens());
+        assertArrayEquals(expected.puzzle.getSolution(), actual.getSolution());
+    }
+
+    private static void assertOpenFails(Path path, String reason) {
+        try {
+            PuzzleCorpus.open(path, CHUNK_BYTES).close();
+            fail("Opened an invalid corpus");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(reason));
+        }
+    }
+
+    private Path corpusPath() {
+        return folder.getRoot().toPath().resolve("puzzles.sdkc");
+    }
+
+    private static final class Stored {
+
+        final Puzzle puzzle;
+        final Grade grade;
+
+        Stored(Puzzle puzzle, Grade grade) {
+            this.puzzle = puzzle;
+            this.grade = grade;
+        }
+    }
+}
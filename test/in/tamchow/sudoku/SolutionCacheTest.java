@@ -0,0 +1,130 @@
+package in.tamchow.sudoku;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SolutionCacheTest {
+
+    private static final int TRANSFORMS = 50;
+
+    @Before
+    public void clearSharedCache() {
+        SolutionCache.shared().clear();
+    }
+
+    @Test
+    public void symmetricCopiesOfUniquePuzzlesAreAnsweredCorrectlyFromTheCache() {
+        for (Geometry geometry : new Geometry[]{Geometry.ofSize(4), Geometry.of(6, 6, 2, 3), Geometry.of(6, 6, 3, 2),
+                Geometry.ofSize(9), Geometry.ofSize(16)}) {
+            Random random = new Random(geometry.getSize() * 31L + geometry.getBoxRows());
+            int[] puzzle = new PuzzleGenerator(geometry, 0.5, 2 * geometry.getSize(), geometry.getCells() / 2, random)
+                    .generate().getGivens();
+            assertTrue(geometry.toString(), SolverMode.BITBOARD.solve(geometry, puzzle).isSolved());
+            long hitsBefore = SolutionCache.shared().getHits();
+            for (int transform = 0; transform < TRANSFORMS; ++transform) {
+                int[] copy = randomSymmetry(geometry, puzzle, random);
+                SolveResult cached = SolverMode.BITBOARD.solve(geometry, copy);
+                Solver fresh = new BitboardSolver(geometry);
+                assertTrue(fresh.load(copy) && fresh.solve());
+                assertArrayEquals(geometry + " transform " + transform, fresh.getSolution(), cached.getSolution());
+            }
+            assertEquals(geometry.toString(), TRANSFORMS, SolutionCache.shared().getHits() - hitsBefore);
+        }
+    }
+
+    @Test
+    public void symmetricCopiesOfAmbiguousBoardsGetValidSolutions() {
+        Geometry geometry = Geometry.ofSize(9);
+        Random random = new Random(7);
+        int[] solution = new PuzzleGenerator(geometry, 0, 0, 0, random).generate().getSolution(),
+                board = new int[geometry.getCells()];
+        for (int cell = 0; cell < board.length; cell += 3) {
+            board[cell] = solution[cell];
+        }
+        assertTrue(SolverMode.BITBOARD.solve(geometry, board).isSolved());
+        for (int transform = 0; transform < TRANSFORMS; ++transform) {
+            int[] copy = randomSymmetry(geometry, board, random);
+            assertSolves(geometry, copy, SolverMode.BITBOARD.solve(geometry, copy).getSolution());
+        }
+    }
+
+    @Test
+    public void boardsOfOtherSubGridShapesDoNotShareSolutions() {
+        Geometry wide = Geometry.of(6, 6, 2, 3), tall = Geometry.of(6, 6, 3, 2);
+        int[] puzzle = new PuzzleGenerator(wide, 0.5, 12, 18, new Random(3)).generate().getGivens();
+        assertTrue(SolverMode.BITBOARD.solve(wide, puzzle).isSolved());
+        SolveResult result = SolverMode.BITBOARD.solve(tall, puzzle);
+        if (result.isSolved()) {
+            assertSolves(tall, puzzle, result.getSolution());
+        }
+    }
+
+    /**
+     * Applies a random symmetry: rows within bands, bands, columns within stacks and stacks are shuffled, digits
+     * are relabelled, and boards with square sub-grids may be transposed.
+     */
+    private static int[] randomSymmetry(Geometry geometry, int[] board, Random random) {
+        int size = geometry.getSize();
+        int[] rows = lineOrder(size, geometry.getBoxRows(), random),
+                columns = lineOrder(size, geometry.getBoxColumns(), random),
+                labels = new int[size + 1], digits = shuffled(size, random);
+        for (int digit = 1; digit <= size; ++digit) {
+            labels[digit] = digits[digit - 1] + 1;
+        }
+        boolean transposed = geometry.getBoxRows() == geometry.getBoxColumns() && random.nextBoolean();
+        int[] copy = new int[board.length];
+        for (int rowIndex = 0; rowIndex < size; ++rowIndex) {
+            for (int columnIndex = 0; columnIndex < size; ++columnIndex) {
+                int source = transposed ? geometry.cellAt(columns[columnIndex], rows[rowIndex]) :
+                        geometry.cellAt(rows[rowIndex], columns[columnIndex]);
+                copy[geometry.cellAt(rowIndex, columnIndex)] = labels[board[source]];
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * @return a permutation of lines that keeps each group of {@code groupSize} consecutive lines together
+     */
+    private static int[] lineOrder(int size, int groupSize, Random random) {
+        int[] groups = shuffled(size / groupSize, random), order = new int[size];
+        for (int group = 0; group < groups.length; ++group) {
+            int[] lines = shuffled(groupSize, random);
+            for (int line = 0; line < groupSize; ++line) {
+                order[group * groupSize + line] = groups[group] * groupSize + lines[line];
+            }
+        }
+        return order;
+    }
+
+    private static int[] shuffled(int length, Random random) {
+        int[] order = new int[length];
+        for (int i = 0; i < length; ++i) {
+            order[i] = i;
+        }
+        for (int i = length - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1), swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    private static void assertSolves(Geometry geometry, int[] board, int[] solution) {
+        assertNotNull(solution);
+        for (int cell = 0; cell < board.length; ++cell) {
+            assertTrue("Given changed at " + cell, board[cell] == 0 || board[cell] == solution[cell]);
+        }
+        for (int unit = 0; unit < geometry.unitCount(); ++unit) {
+            int seen = 0;
+            for (int cell : geometry.unit(unit)) {
+                seen |= 1 << (solution[cell] - 1);
+            }
+            assertEquals("Unit " + unit, geometry.fullMask(), seen);
+        }
+    }
+}